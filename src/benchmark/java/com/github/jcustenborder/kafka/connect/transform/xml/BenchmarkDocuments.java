@@ -0,0 +1,116 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.transform.xml;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Generates schemas and documents for the benchmarks. A document contains {@code records} record
+ * elements and every record is nested {@code depth} levels deep.
+ */
+class BenchmarkDocuments {
+  static final String NAMESPACE = "urn:benchmark";
+  static final String[] STATUSES = {"active", "on-hold", "closed"};
+
+  private BenchmarkDocuments() {
+
+  }
+
+  static String schema(int depth) {
+    StringBuilder builder = new StringBuilder();
+    builder.append("<xsd:schema xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\" targetNamespace=\"")
+        .append(NAMESPACE)
+        .append("\" xmlns:b=\"")
+        .append(NAMESPACE)
+        .append("\">\n");
+    builder.append("  <xsd:element name=\"document\" type=\"b:DocumentForm\"/>\n");
+    builder.append("  <xsd:complexType name=\"DocumentForm\">\n");
+    builder.append("    <xsd:sequence>\n");
+    builder.append("      <xsd:element name=\"record\" type=\"b:Level1Form\" minOccurs=\"0\" maxOccurs=\"unbounded\"/>\n");
+    builder.append("    </xsd:sequence>\n");
+    builder.append("  </xsd:complexType>\n");
+    builder.append("  <xsd:simpleType name=\"Status\">\n");
+    builder.append("    <xsd:restriction base=\"xsd:string\">\n");
+    for (String status : STATUSES) {
+      builder.append("      <xsd:enumeration value=\"").append(status).append("\"/>\n");
+    }
+    builder.append("    </xsd:restriction>\n");
+    builder.append("  </xsd:simpleType>\n");
+
+    for (int level = 1; level <= depth; level++) {
+      builder.append("  <xsd:complexType name=\"Level").append(level).append("Form\">\n");
+      builder.append("    <xsd:sequence>\n");
+      builder.append("      <xsd:element name=\"name\" type=\"xsd:string\"/>\n");
+      builder.append("      <xsd:element name=\"quantity\" type=\"xsd:int\"/>\n");
+      builder.append("      <xsd:element name=\"amount\" type=\"xsd:double\"/>\n");
+      builder.append("      <xsd:element name=\"created\" type=\"xsd:dateTime\"/>\n");
+      builder.append("      <xsd:element name=\"status\" type=\"b:Status\"/>\n");
+      if (level < depth) {
+        builder.append("      <xsd:element name=\"child\" type=\"b:Level").append(level + 1).append("Form\"/>\n");
+      }
+      builder.append("    </xsd:sequence>\n");
+      builder.append("    <xsd:attribute name=\"id\" type=\"xsd:string\"/>\n");
+      builder.append("  </xsd:complexType>\n");
+    }
+    builder.append("</xsd:schema>\n");
+    return builder.toString();
+  }
+
+  static String document(int records, int depth) {
+    StringBuilder builder = new StringBuilder();
+    builder.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    builder.append("<b:document xmlns:b=\"").append(NAMESPACE).append("\">\n");
+    for (int i = 0; i < records; i++) {
+      builder.append("<record");
+      level(builder, i, 1, depth);
+      builder.append("</record>\n");
+    }
+    builder.append("</b:document>\n");
+    return builder.toString();
+  }
+
+  static void level(StringBuilder builder, int record, int level, int depth) {
+    builder.append(" id=\"r").append(record).append('-').append(level).append("\">");
+    builder.append("<name>Record ").append(record).append(" level ").append(level).append("</name>");
+    builder.append("<quantity>").append(record * level).append("</quantity>");
+    builder.append("<amount>").append(record).append('.').append(level).append("5</amount>");
+    builder.append("<created>2019-06-01T12:30:00Z</created>");
+    builder.append("<status>").append(STATUSES[(record + level) % STATUSES.length]).append("</status>");
+    if (level < depth) {
+      builder.append("<child");
+      level(builder, record, level + 1, depth);
+      builder.append("</child>");
+    }
+  }
+
+  /**
+   * Writes the schema for the supplied depth to a file in the directory.
+   *
+   * @param directory directory to write the schema to.
+   * @param depth nesting depth of each record.
+   * @return url of the schema file.
+   * @throws IOException thrown if the schema could not be written.
+   */
+  static String writeSchema(File directory, int depth) throws IOException {
+    File schemaFile = new File(directory, String.format("benchmark-%s.xsd", depth));
+    Files.write(schema(depth), schemaFile, Charsets.UTF_8);
+    return schemaFile.toURI().toURL().toString();
+  }
+}
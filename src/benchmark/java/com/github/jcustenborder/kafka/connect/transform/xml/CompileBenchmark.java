@@ -0,0 +1,81 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.transform.xml;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.bind.JAXBContext;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link XSDCompiler#compileContext()}, which is the time a task spends in
+ * {@link FromXml#configure(java.util.Map)} before it can process the first record. Every
+ * invocation compiles the schema from scratch and each fork measures the first compile in a fresh
+ * jvm.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 5)
+@Fork(3)
+public class CompileBenchmark {
+  @Param({"1", "8"})
+  public int depth;
+
+  File tempDirectory;
+  FromXmlConfig config;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    this.tempDirectory = Files.createTempDir();
+    this.config = new FromXmlConfig(
+        ImmutableMap.of(
+            FromXmlConfig.SCHEMA_PATH_CONFIG, BenchmarkDocuments.writeSchema(this.tempDirectory, this.depth)
+        )
+    );
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    MoreFiles.deleteRecursively(this.tempDirectory.toPath(), RecursiveDeleteOption.ALLOW_INSECURE);
+  }
+
+  @Benchmark
+  public JAXBContext compileContext() throws IOException {
+    try (XSDCompiler compiler = new XSDCompiler(this.config)) {
+      return compiler.compileContext();
+    }
+  }
+}
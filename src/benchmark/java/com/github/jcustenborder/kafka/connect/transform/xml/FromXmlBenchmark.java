@@ -0,0 +1,101 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.transform.xml;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link FromXml.Value#apply(org.apache.kafka.connect.connector.ConnectRecord)} for string
+ * and byte input. Results are reported in records per second, and the gc profiler enabled by the
+ * benchmark profile adds the bytes allocated per record as {@code gc.alloc.rate.norm}. Run with
+ * {@code -bm avgt -tu ns} to report ns/op instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FromXmlBenchmark {
+  @Param({"1", "10", "100"})
+  public int records;
+
+  @Param({"1", "4", "8"})
+  public int depth;
+
+  @Param({"JAXB", "STAX"})
+  public String conversionMode;
+
+  File tempDirectory;
+  FromXml.Value<SinkRecord> transform;
+  SinkRecord stringRecord;
+  SinkRecord bytesRecord;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    this.tempDirectory = Files.createTempDir();
+    this.transform = new FromXml.Value<>();
+    this.transform.configure(
+        ImmutableMap.of(
+            FromXmlConfig.SCHEMA_PATH_CONFIG, BenchmarkDocuments.writeSchema(this.tempDirectory, this.depth),
+            FromXmlConfig.CONVERSION_MODE_CONFIG, this.conversionMode
+        )
+    );
+
+    final String document = BenchmarkDocuments.document(this.records, this.depth);
+    this.stringRecord = new SinkRecord("test", 1, null, null, Schema.STRING_SCHEMA, document, 1L);
+    this.bytesRecord = new SinkRecord("test", 1, null, null, Schema.BYTES_SCHEMA, document.getBytes(Charsets.UTF_8), 1L);
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    this.transform.close();
+    MoreFiles.deleteRecursively(this.tempDirectory.toPath(), RecursiveDeleteOption.ALLOW_INSECURE);
+  }
+
+  @Benchmark
+  public SinkRecord applyString() {
+    return this.transform.apply(this.stringRecord);
+  }
+
+  @Benchmark
+  public SinkRecord applyBytes() {
+    return this.transform.apply(this.bytesRecord);
+  }
+}
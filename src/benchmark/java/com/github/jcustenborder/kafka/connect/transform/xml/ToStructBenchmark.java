@@ -0,0 +1,108 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.transform.xml;
+
+import com.github.jcustenborder.kafka.connect.xml.Connectable;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the conversion of an unmarshalled document to a struct on its own, comparing the
+ * {@code toStruct()} method generated by the xjc plugin with {@link StructBinding#toStruct(Object)}.
+ * Parsing is left out so the difference is not hidden by the cost of reading the xml.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ToStructBenchmark {
+  @Param({"10"})
+  public int records;
+
+  @Param({"1", "4", "8"})
+  public int depth;
+
+  File tempDirectory;
+  FromXml.Value<SinkRecord> transform;
+  Connectable document;
+  StructBinding binding;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException, JAXBException {
+    this.tempDirectory = Files.createTempDir();
+    this.transform = new FromXml.Value<>();
+    this.transform.configure(
+        ImmutableMap.of(
+            FromXmlConfig.SCHEMA_PATH_CONFIG, BenchmarkDocuments.writeSchema(this.tempDirectory, this.depth)
+        )
+    );
+
+    final CompiledSchema compiled = this.transform.compiled;
+    final Unmarshaller unmarshaller = compiled.borrow();
+    try {
+      final Object element = unmarshaller.unmarshal(
+          new StringReader(BenchmarkDocuments.document(this.records, this.depth))
+      );
+      this.document = (Connectable) (element instanceof JAXBElement ? ((JAXBElement<?>) element).getValue() : element);
+    } finally {
+      compiled.release(unmarshaller);
+    }
+    this.binding = compiled.bindings.get(this.document.getClass());
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    this.transform.close();
+    MoreFiles.deleteRecursively(this.tempDirectory.toPath(), RecursiveDeleteOption.ALLOW_INSECURE);
+  }
+
+  @Benchmark
+  public Struct generated() {
+    return this.document.toStruct();
+  }
+
+  @Benchmark
+  public Struct binding() {
+    return this.binding.toStruct(this.document);
+  }
+}
@@ -0,0 +1,300 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.transform.xml;
+
+import com.github.jcustenborder.kafka.connect.xml.Connectable;
+import com.google.common.base.Strings;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.connect.data.SchemaAndValue;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.DataException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.validation.Schema;
+import javax.xml.validation.ValidatorHandler;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Everything that depends on the classes compiled from the schema. A transformation holds a single
+ * instance and replaces it as a whole when the schema is reloaded, so each record is converted with
+ * a context, unmarshaller and bindings that belong together.
+ *
+ * Instances are reference counted. The transformation holds the first reference and each record or
+ * batch being converted takes another with {@link #retain()}. {@link #close()} releases a
+ * reference and the resources are released with the last one.
+ */
+class CompiledSchema implements Closeable {
+  private static final Logger log = LoggerFactory.getLogger(CompiledSchema.class);
+  final FromXmlConfig config;
+  final JAXBContextRegistry.Registration registration;
+  final JAXBContext context;
+  final Map<Class<?>, StructBinding> bindings;
+  final StaxStructReader structReader;
+  final StaxStructSplitter splitter;
+  final ObjectPool<Unmarshaller> unmarshallers;
+  final Schema validationSchema;
+  final ObjectPool<ValidatorHandler> validators;
+  final AtomicInteger references = new AtomicInteger(1);
+
+  private CompiledSchema(FromXmlConfig config, XMLInputFactory inputFactory, JAXBContextRegistry.Registration registration) throws IOException {
+    this.config = config;
+    this.registration = registration;
+    this.context = registration.context();
+
+    Map<QName, StructBinding> roots = StructBinding.rootElements(
+        registration.classLoader(),
+        registration.packages()
+    );
+    if (!config.projectionPaths.isEmpty()) {
+      roots = project(roots, config.projectionPaths);
+    }
+    this.bindings = new HashMap<>();
+    for (StructBinding binding : roots.values()) {
+      log.trace("ctor() - Resolved schema '{}' for {}", binding.schema.name(), binding.type.getName());
+      this.bindings.put(binding.type, binding);
+    }
+
+    final StaxStructReader staxStructReader = new StaxStructReader(inputFactory, roots);
+    this.structReader = FromXmlConfig.ConversionMode.STAX == config.conversionMode || !config.projectionPaths.isEmpty() ?
+        staxStructReader : null;
+    this.splitter = Strings.isNullOrEmpty(config.splitElementPath) ?
+        null : StaxStructSplitter.of(staxStructReader, config.splitElementPath);
+
+    this.unmarshallers = new ObjectPool<>(this.context::createUnmarshaller, config.unmarshallerPoolSize);
+    try {
+      // Create the first unmarshaller up front so configuration problems are raised here.
+      this.unmarshallers.release(this.unmarshallers.borrow());
+    } catch (JAXBException e) {
+      throw new IllegalStateException(e);
+    }
+
+    if (config.validationEnabled) {
+      this.validationSchema = registration.validationSchema();
+      this.validators = new ObjectPool<>(this.validationSchema::newValidatorHandler, config.unmarshallerPoolSize);
+    } else {
+      this.validationSchema = null;
+      this.validators = null;
+    }
+  }
+
+  /**
+   * Applies the projection to every root element. With more than one root, for example with
+   * several schema sets, each path is only applied to the roots that have it and roots that none
+   * of the paths match are read in full.
+   *
+   * @param roots bindings by root element.
+   * @param paths paths of {@link FromXmlConfig#PROJECTION_PATHS_CONFIG}.
+   * @return projected bindings by root element.
+   */
+  static Map<QName, StructBinding> project(Map<QName, StructBinding> roots, List<String> paths) {
+    final Map<QName, List<String>> pathsByRoot = new HashMap<>();
+    for (String path : paths) {
+      final List<String> segments = Projection.SPLITTER.splitToList(path);
+      boolean resolved = false;
+      for (Map.Entry<QName, StructBinding> root : roots.entrySet()) {
+        if (root.getValue().resolves(segments)) {
+          pathsByRoot.computeIfAbsent(root.getKey(), k -> new ArrayList<>()).add(path);
+          resolved = true;
+        }
+      }
+      if (!resolved) {
+        throw new ConfigException(
+            FromXmlConfig.PROJECTION_PATHS_CONFIG,
+            path,
+            String.format("None of the root elements %s have the element or attribute at '%s'.", roots.keySet(), path)
+        );
+      }
+    }
+
+    final Map<QName, StructBinding> result = new HashMap<>();
+    for (Map.Entry<QName, StructBinding> root : roots.entrySet()) {
+      final List<String> rootPaths = pathsByRoot.get(root.getKey());
+      result.put(
+          root.getKey(),
+          null == rootPaths ?
+              root.getValue() :
+              root.getValue().project(Projection.of(rootPaths), root.getKey().getLocalPart())
+      );
+      log.debug("project() - Projecting {} with {}", root.getKey(), rootPaths);
+    }
+    return result;
+  }
+
+  /**
+   * Method is used to compile, or acquire the shared context for, the configured schema.
+   *
+   * @param config config to compile the schema with.
+   * @param inputFactory factory used by the StAX reader.
+   * @return compiled schema that must be closed once it is no longer used.
+   * @throws IOException thrown if the schema could not be read or compiled.
+   */
+  static CompiledSchema compile(FromXmlConfig config, XMLInputFactory inputFactory) throws IOException {
+    final JAXBContextRegistry.Registration registration = JAXBContextRegistry.acquire(config);
+    try {
+      return new CompiledSchema(config, inputFactory, registration);
+    } catch (IOException | RuntimeException e) {
+      registration.close();
+      throw e;
+    }
+  }
+
+  /**
+   * @return hash of the schema content this was compiled from.
+   */
+  String key() {
+    return this.registration.key();
+  }
+
+  /**
+   * Borrows an unmarshaller from the pool. Returns null in the STAX conversion mode which does not
+   * use one.
+   */
+  Unmarshaller borrow() {
+    if (null != this.structReader) {
+      return null;
+    }
+    try {
+      return this.unmarshallers.borrow();
+    } catch (JAXBException e) {
+      throw new DataException("Exception thrown while creating unmarshaller", e);
+    }
+  }
+
+  void release(Unmarshaller unmarshaller) {
+    this.unmarshallers.release(unmarshaller);
+  }
+
+  /**
+   * Method is used to read the document with StAX, validating it in the same pass if requested.
+   *
+   * @param reader reader for the document. The reader is closed.
+   * @param validate true if the document should be validated.
+   * @return struct for the root element.
+   * @throws SAXException thrown if the document is not valid.
+   */
+  Struct read(XMLStreamReader reader, boolean validate) throws XMLStreamException, JAXBException, SAXException {
+    if (!validate) {
+      return this.structReader.read(reader);
+    }
+    ValidatorHandler handler = null;
+    try {
+      handler = this.validators.borrow();
+      return this.structReader.read(new ValidatingStreamReader(reader, handler));
+    } catch (XMLStreamException e) {
+      if (e.getNestedException() instanceof SAXException) {
+        throw (SAXException) e.getNestedException();
+      }
+      throw e;
+    } finally {
+      this.validators.release(handler);
+      reader.close();
+    }
+  }
+
+  SchemaAndValue schemaAndValue(Object element) {
+    if (element instanceof Struct) {
+      Struct struct = (Struct) element;
+      return new SchemaAndValue(struct.schema(), struct);
+    } else if (element instanceof Connectable) {
+      return schemaAndValue((Connectable) element);
+    } else if (element instanceof JAXBElement) {
+      JAXBElement jaxbElement = (JAXBElement) element;
+
+      if (jaxbElement.getValue() instanceof Connectable) {
+        return schemaAndValue((Connectable) jaxbElement.getValue());
+      } else {
+        throw new DataException(
+            String.format(
+                "%s does not implement Connectable",
+                jaxbElement.getValue().getClass()
+            )
+        );
+      }
+    } else {
+      throw new DataException(
+          String.format("%s is not a supported type", element.getClass())
+      );
+    }
+  }
+
+  /**
+   * Converts the jaxb object to a struct with the generated {@code toStruct()} method, unless lazy
+   * structs or the reflective conversion are enabled for a declared root type.
+   */
+  SchemaAndValue schemaAndValue(Connectable connectable) {
+    final StructBinding binding = this.bindings.get(connectable.getClass());
+    if (null != binding && this.config.lazyStructEnabled) {
+      return new SchemaAndValue(binding.schema, LazyStruct.of(binding, connectable));
+    } else if (null != binding && this.config.reflectionConversionEnabled) {
+      return new SchemaAndValue(binding.schema, binding.toStruct(connectable));
+    }
+    final Struct struct = connectable.toStruct();
+    return new SchemaAndValue(struct.schema(), struct);
+  }
+
+  /**
+   * Method is used to take another reference to the schema.
+   *
+   * @return true if a reference was taken, false if the last reference was already released.
+   */
+  boolean retain() {
+    int count;
+    do {
+      count = this.references.get();
+      if (count <= 0) {
+        return false;
+      }
+    } while (!this.references.compareAndSet(count, count + 1));
+    return true;
+  }
+
+  @Override
+  public void close() {
+    final int remaining = this.references.decrementAndGet();
+    if (remaining > 0) {
+      log.trace("close() - {} reference(s) to schema {} remain.", remaining, key());
+      return;
+    } else if (remaining < 0) {
+      log.warn("close() - Schema {} was already closed.", key());
+      return;
+    }
+    this.unmarshallers.close();
+    if (null != this.validators) {
+      this.validators.close();
+    }
+    try {
+      this.registration.close();
+    } catch (IOException e) {
+      log.error("Exception thrown", e);
+    }
+  }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.transform.xml;
+
+import com.github.luben.zstd.ZstdInputStream;
+import org.xerial.snappy.SnappyCodec;
+import org.xerial.snappy.SnappyFramedInputStream;
+import org.xerial.snappy.SnappyInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Opens the bytes of a record as a stream that decompresses them as the parser reads, so the
+ * inflated document is never held in memory as a whole. The codecs are the ones Kafka uses for
+ * compressed batches, which come with kafka-clients on every worker.
+ *
+ * Streams for compressed input hold native or inflater memory so they must be closed.
+ */
+class Decompression {
+  static final byte[] GZIP_MAGIC = {(byte) 0x1f, (byte) 0x8b};
+  static final byte[] ZSTD_MAGIC = {(byte) 0x28, (byte) 0xb5, (byte) 0x2f, (byte) 0xfd};
+  static final byte[] SNAPPY_FRAMED_MAGIC = {(byte) 0xff, 0x06, 0x00, 0x00, 's', 'N', 'a', 'P', 'p', 'Y'};
+  static final int GZIP_BUFFER_SIZE = 8192;
+
+  private Decompression() {
+
+  }
+
+  static InputStream open(FromXmlConfig.Compression compression, byte[] input) throws IOException {
+    final InputStream inputStream = new ByteArrayInputStream(input);
+    switch (compression) {
+      case NONE:
+        return inputStream;
+      case AUTO:
+        final FromXmlConfig.Compression detected = detect(input);
+        return FromXmlConfig.Compression.NONE == detected ? inputStream : open(detected, input);
+      case GZIP:
+        return new GZIPInputStream(inputStream, GZIP_BUFFER_SIZE);
+      case ZSTD:
+        return new ZstdInputStream(inputStream);
+      case SNAPPY:
+        return startsWith(input, SNAPPY_FRAMED_MAGIC) ?
+            new SnappyFramedInputStream(inputStream) :
+            new SnappyInputStream(inputStream);
+      default:
+        throw new IllegalStateException(
+            String.format("Compression %s is not handled.", compression)
+        );
+    }
+  }
+
+  /**
+   * Method is used to detect the codec from the magic bytes at the start of the input. xml can
+   * not start with any of them so input without a known header is read as is.
+   *
+   * @param input bytes of the record.
+   * @return codec of the input or {@link FromXmlConfig.Compression#NONE}.
+   */
+  static FromXmlConfig.Compression detect(byte[] input) {
+    if (startsWith(input, GZIP_MAGIC)) {
+      return FromXmlConfig.Compression.GZIP;
+    } else if (startsWith(input, ZSTD_MAGIC)) {
+      return FromXmlConfig.Compression.ZSTD;
+    } else if (SnappyCodec.hasMagicHeaderPrefix(input) || startsWith(input, SNAPPY_FRAMED_MAGIC)) {
+      return FromXmlConfig.Compression.SNAPPY;
+    }
+    return FromXmlConfig.Compression.NONE;
+  }
+
+  static boolean startsWith(byte[] input, byte[] prefix) {
+    if (input.length < prefix.length) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length; i++) {
+      if (input[i] != prefix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
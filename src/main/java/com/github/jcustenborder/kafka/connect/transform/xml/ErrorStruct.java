@@ -0,0 +1,99 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.transform.xml;
+
+import org.apache.kafka.connect.connector.ConnectRecord;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.xml.sax.SAXParseException;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * Builds the struct that replaces a record that could not be converted when
+ * {@link FromXmlConfig#ERROR_MODE_CONFIG} is {@link FromXmlConfig.ErrorMode#ERROR_STRUCT}. The
+ * line and column are read from the exception thrown by the parser or validator.
+ */
+class ErrorStruct {
+  static final Schema SCHEMA = SchemaBuilder.struct()
+      .name("com.github.jcustenborder.kafka.connect.transform.xml.Error")
+      .field("topic", Schema.OPTIONAL_STRING_SCHEMA)
+      .field("partition", Schema.OPTIONAL_INT32_SCHEMA)
+      .field("offset", Schema.OPTIONAL_INT64_SCHEMA)
+      .field("line", Schema.OPTIONAL_INT32_SCHEMA)
+      .field("column", Schema.OPTIONAL_INT32_SCHEMA)
+      .field("message", Schema.OPTIONAL_STRING_SCHEMA)
+      .build();
+
+  private ErrorStruct() {
+
+  }
+
+  static Struct of(ConnectRecord<?> record, Throwable throwable) {
+    final Struct result = new Struct(SCHEMA)
+        .put("topic", record.topic())
+        .put("partition", record.kafkaPartition())
+        .put("message", message(throwable));
+    if (record instanceof SinkRecord) {
+      result.put("offset", ((SinkRecord) record).kafkaOffset());
+    }
+    for (Throwable cause = throwable; null != cause; cause = next(cause)) {
+      if (cause instanceof XMLStreamException && null != ((XMLStreamException) cause).getLocation()) {
+        final Location location = ((XMLStreamException) cause).getLocation();
+        return position(result, location.getLineNumber(), location.getColumnNumber());
+      } else if (cause instanceof SAXParseException) {
+        final SAXParseException exception = (SAXParseException) cause;
+        return position(result, exception.getLineNumber(), exception.getColumnNumber());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Parsers return -1 when the position is not known.
+   */
+  static Struct position(Struct struct, int line, int column) {
+    return struct
+        .put("line", line < 0 ? null : line)
+        .put("column", column < 0 ? null : column);
+  }
+
+  /**
+   * JAXB keeps the exception thrown by the parser as the linked exception.
+   */
+  static Throwable next(Throwable throwable) {
+    if (throwable instanceof JAXBException && null != ((JAXBException) throwable).getLinkedException()) {
+      return ((JAXBException) throwable).getLinkedException();
+    }
+    return throwable.getCause() == throwable ? null : throwable.getCause();
+  }
+
+  /**
+   * @return the first message in the chain of causes.
+   */
+  static String message(Throwable throwable) {
+    for (Throwable cause = throwable; null != cause; cause = next(cause)) {
+      if (null != cause.getMessage()) {
+        return cause.getMessage();
+      }
+    }
+    return throwable.getClass().getName();
+  }
+}
@@ -19,26 +19,44 @@ import com.github.jcustenborder.kafka.connect.utils.config.Description;
 import com.github.jcustenborder.kafka.connect.utils.config.DocumentationTip;
 import com.github.jcustenborder.kafka.connect.utils.config.Title;
 import com.github.jcustenborder.kafka.connect.utils.transformation.BaseKeyValueTransformation;
-import com.github.jcustenborder.kafka.connect.xml.Connectable;
+import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.kafka.common.config.ConfigDef;
 import org.apache.kafka.connect.connector.ConnectRecord;
+import org.apache.kafka.connect.data.Schema;
 import org.apache.kafka.connect.data.SchemaAndValue;
 import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.ConnectException;
 import org.apache.kafka.connect.errors.DataException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
 
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
-import java.io.ByteArrayInputStream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Title("FromXML")
 @Description("This transformation is used to read XML data stored as bytes or a string and convert " +
@@ -50,9 +68,38 @@ import java.util.Map;
 public abstract class FromXml<R extends ConnectRecord<R>> extends BaseKeyValueTransformation<R> {
   private static final Logger log = LoggerFactory.getLogger(FromXml.class);
   FromXmlConfig config;
-  JAXBContext context;
-  Unmarshaller unmarshaller;
-  XSDCompiler compiler;
+  volatile CompiledSchema compiled;
+  FromXmlMetrics metrics;
+  ForkJoinPool executor;
+  XMLInputFactory inputFactory;
+  final AtomicLong validationCounter = new AtomicLong();
+  volatile CompletableFuture<Void> compilation;
+  final AtomicReference<CompiledSchema> pending = new AtomicReference<>();
+  ScheduledFuture<?> reload;
+  String failedKey;
+  volatile boolean closed;
+
+  /**
+   * Runs the compilation when {@link FromXmlConfig#COMPILE_ASYNC_ENABLED_CONFIG} is enabled. The
+   * threads are daemons so a compilation that is still running does not hold up shutdown.
+   */
+  static final ExecutorService COMPILER = Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder()
+          .setDaemon(true)
+          .setNameFormat("from-xml-compiler-%d")
+          .build()
+  );
+
+  /**
+   * Polls the schemas when {@link FromXmlConfig#SCHEMA_RELOAD_INTERVAL_MS_CONFIG} is set. Changed
+   * schemas are compiled on this thread so the records being converted are not held up.
+   */
+  static final ScheduledExecutorService RELOADER = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder()
+          .setDaemon(true)
+          .setNameFormat("from-xml-schema-reload-%d")
+          .build()
+  );
 
   protected FromXml(boolean isKey) {
     super(isKey);
@@ -65,80 +112,523 @@ public abstract class FromXml<R extends ConnectRecord<R>> extends BaseKeyValueTr
 
   @Override
   public void close() {
+    final CompletableFuture<Void> compilation = this.compilation;
+    if (null != compilation && !compilation.isDone()) {
+      log.info("close() - Schema compilation is still running. Resources will be released once it completes.");
+      compilation.whenComplete((result, throwable) -> release());
+      return;
+    }
+    release();
+  }
+
+  private void release() {
+    this.closed = true;
+    if (null != this.reload) {
+      this.reload.cancel(false);
+    }
+    if (null != this.executor) {
+      this.executor.shutdownNow();
+    }
+    if (null != this.metrics) {
+      this.metrics.close();
+    }
+    final CompiledSchema pending = this.pending.getAndSet(null);
+    if (null != pending) {
+      pending.close();
+    }
+    if (null != this.compiled) {
+      this.compiled.close();
+    }
+  }
+
+  @Override
+  protected SchemaAndValue process(R record, SchemaAndValue input) {
+    if (null == this.metrics) {
+      return super.process(record, input);
+    }
     try {
-      this.compiler.close();
-    } catch (IOException e) {
-      log.error("Exception thrown", e);
+      return super.process(record, input);
+    } catch (RuntimeException e) {
+      this.metrics.failure(e);
+      throw e;
     }
   }
 
   @Override
-  protected SchemaAndValue processString(R record, org.apache.kafka.connect.data.Schema inputSchema, String input) {
-    try (Reader reader = new StringReader(input)) {
-      Object element = this.unmarshaller.unmarshal(reader);
-      return schemaAndValue(element);
-    } catch (IOException | JAXBException e) {
-      throw new DataException("Exception thrown while processing xml", e);
+  protected SchemaAndValue processString(R record, Schema inputSchema, String input) {
+    final CompiledSchema compiled = acquire();
+    Unmarshaller unmarshaller = null;
+    try {
+      unmarshaller = compiled.borrow();
+      return processString(compiled, record, input, unmarshaller);
+    } finally {
+      compiled.release(unmarshaller);
+      compiled.close();
     }
   }
 
   @Override
-  protected SchemaAndValue processBytes(R record, org.apache.kafka.connect.data.Schema inputSchema, byte[] input) {
-    try (InputStream inputStream = new ByteArrayInputStream(input)) {
-      try (Reader reader = new InputStreamReader(inputStream)) {
-        Object element = this.unmarshaller.unmarshal(reader);
-        return schemaAndValue(element);
+  protected SchemaAndValue processBytes(R record, Schema inputSchema, byte[] input) {
+    final CompiledSchema compiled = acquire();
+    Unmarshaller unmarshaller = null;
+    try {
+      unmarshaller = compiled.borrow();
+      return processBytes(compiled, record, input, unmarshaller);
+    } finally {
+      compiled.release(unmarshaller);
+      compiled.close();
+    }
+  }
+
+  SchemaAndValue processString(CompiledSchema compiled, R record, String input, Unmarshaller unmarshaller) {
+    final long start = start(input.length());
+    try {
+      return process(compiled, this.inputFactory.createXMLStreamReader(new StringReader(input)), unmarshaller, start, sample(compiled));
+    } catch (JAXBException | XMLStreamException | SAXException | DataException | IllegalArgumentException e) {
+      return error(record, e);
+    }
+  }
+
+  SchemaAndValue processBytes(CompiledSchema compiled, R record, byte[] input, Unmarshaller unmarshaller) {
+    final long start = start(input.length);
+    try {
+      try (InputStream inputStream = Decompression.open(this.config.inputCompression, input)) {
+        return process(compiled, createXMLStreamReader(inputStream), unmarshaller, start, sample(compiled));
       }
-    } catch (IOException | JAXBException e) {
-      throw new DataException("Exception thrown while processing xml", e);
+    } catch (JAXBException | XMLStreamException | SAXException | IOException | DataException | IllegalArgumentException e) {
+      return error(record, e);
     }
   }
 
-  private SchemaAndValue schemaAndValue(Object element) {
-    final Struct struct;
-    if (element instanceof Connectable) {
-      Connectable connectable = (Connectable) element;
-      struct = connectable.toStruct();
-    } else if (element instanceof JAXBElement) {
-      JAXBElement jaxbElement = (JAXBElement) element;
+  /**
+   * Hands the bytes straight to the parser so the encoding is detected from the prolog unless a
+   * charset is configured.
+   */
+  XMLStreamReader createXMLStreamReader(InputStream inputStream) throws XMLStreamException {
+    return null == this.config.inputCharset ?
+        this.inputFactory.createXMLStreamReader(inputStream) :
+        this.inputFactory.createXMLStreamReader(inputStream, this.config.inputCharset.name());
+  }
 
-      if (jaxbElement.getValue() instanceof Connectable) {
-        Connectable connectable = (Connectable) jaxbElement.getValue();
-        struct = connectable.toStruct();
-      } else {
-        throw new DataException(
-            String.format(
-                "%s does not implement Connectable",
-                jaxbElement.getValue().getClass()
-            )
-        );
+  SchemaAndValue process(CompiledSchema compiled, XMLStreamReader reader, Unmarshaller unmarshaller, long start, boolean validate) throws XMLStreamException, JAXBException, SAXException {
+    if (null != compiled.structReader) {
+      return convert(compiled, compiled.read(reader, validate), start);
+    }
+    if (null != compiled.validationSchema) {
+      // Validation happens while unmarshalling so the document is only parsed once.
+      unmarshaller.setSchema(validate ? compiled.validationSchema : null);
+    }
+    final Object element;
+    try {
+      element = unmarshaller.unmarshal(reader);
+    } finally {
+      reader.close();
+    }
+    return convert(compiled, element, start);
+  }
+
+  /**
+   * @return true if the next document should be validated.
+   */
+  boolean sample(CompiledSchema compiled) {
+    if (null == compiled.validationSchema) {
+      return false;
+    }
+    return this.validationCounter.getAndIncrement() % this.config.validationSampleRate == 0;
+  }
+
+  /**
+   * Handles a record that could not be converted according to {@link FromXmlConfig#ERROR_MODE_CONFIG}.
+   * Only the {@link FromXmlConfig.ErrorMode#FAIL} mode creates an exception, so a burst of bad
+   * records does not pay for capturing a stack trace per record.
+   *
+   * @return the replacement key or value, or null if the record should be dropped.
+   */
+  SchemaAndValue error(R record, Exception e) {
+    if (FromXmlConfig.ErrorMode.FAIL == this.config.errorMode) {
+      if (e instanceof DataException) {
+        throw (DataException) e;
       }
-    } else {
+      // The JAXB conversion mode reports the validator's exception as the linked exception.
+      final Throwable invalid = e instanceof JAXBException ? ((JAXBException) e).getLinkedException() : e;
       throw new DataException(
-          String.format("%s is not a supported type", element.getClass())
+          invalid instanceof SAXException ? "Document is not valid: " + invalid.getMessage() : "Exception thrown while processing xml",
+          e
       );
     }
-    return new SchemaAndValue(struct.schema(), struct);
+    if (null != this.metrics) {
+      this.metrics.failure(e);
+    }
+    log.debug(
+        "error() - Could not convert record from {}-{}. Handling with {}: {}",
+        record.topic(), record.kafkaPartition(), this.config.errorMode, e.getMessage()
+    );
+    switch (this.config.errorMode) {
+      case SKIP:
+        return null;
+      case PASSTHROUGH:
+        return this.isKey ?
+            new SchemaAndValue(record.keySchema(), record.key()) :
+            new SchemaAndValue(record.valueSchema(), record.value());
+      case ERROR_STRUCT:
+        final Struct struct = ErrorStruct.of(record, e);
+        return new SchemaAndValue(struct.schema(), struct);
+      default:
+        throw new IllegalStateException(
+            String.format("Error mode %s is not handled.", this.config.errorMode)
+        );
+    }
+  }
+
+  /**
+   * Method is used to convert a batch of records. When {@link FromXmlConfig#BATCH_PARALLELISM_CONFIG}
+   * is greater than 1 large batches are split into contiguous chunks that are converted in
+   * parallel, otherwise the records are converted on the calling thread. Each chunk uses a single
+   * unmarshaller. In the {@link FromXmlConfig.ErrorMode#FAIL} error mode the first record that
+   * fails stops the conversion. The whole batch is converted with the same compiled schema, even if
+   * a reloaded schema is swapped in while it runs.
+   *
+   * @param records records to convert.
+   * @return converted records in the same order as the input, without the records that were
+   * skipped.
+   */
+  @SuppressWarnings("unchecked")
+  public List<R> apply(Collection<R> records) {
+    final List<R> input = records instanceof List ? (List<R>) records : new ArrayList<>(records);
+    final Object[] output = new Object[input.size()];
+
+    try (CompiledSchema compiled = acquire()) {
+      if (null == this.executor || input.size() < this.config.batchParallelMinRecords) {
+        apply(compiled, input, 0, input.size(), output);
+      } else {
+        applyParallel(compiled, input, output);
+      }
+    }
+
+    final List<R> result = new ArrayList<>(output.length);
+    for (Object record : output) {
+      if (null != record) {
+        result.add((R) record);
+      }
+    }
+    return result;
+  }
+
+  void applyParallel(CompiledSchema compiled, List<R> input, Object[] output) {
+    final int chunks = Math.min(input.size(), this.config.batchParallelism * 4);
+    final List<ForkJoinTask<?>> tasks = new ArrayList<>(chunks);
+    for (int i = 0; i < chunks; i++) {
+      final int from = (int) ((long) input.size() * i / chunks);
+      final int to = (int) ((long) input.size() * (i + 1) / chunks);
+      tasks.add(this.executor.submit(() -> {
+        // Chunks that are still running when the batch fails hold on to the schema until they
+        // finish. A chunk that starts after it was released has nothing left to do.
+        if (!compiled.retain()) {
+          return;
+        }
+        try {
+          apply(compiled, input, from, to, output);
+        } finally {
+          compiled.close();
+        }
+      }));
+    }
+    try {
+      for (ForkJoinTask<?> task : tasks) {
+        task.join();
+      }
+    } catch (RuntimeException e) {
+      for (ForkJoinTask<?> task : tasks) {
+        task.cancel(false);
+      }
+      throw e;
+    }
+  }
+
+  void apply(CompiledSchema compiled, List<R> records, int from, int to, Object[] output) {
+    Unmarshaller unmarshaller = null;
+    try {
+      unmarshaller = compiled.borrow();
+      for (int i = from; i < to; i++) {
+        output[i] = apply(compiled, records.get(i), unmarshaller);
+      }
+    } finally {
+      compiled.release(unmarshaller);
+    }
+  }
+
+  R apply(CompiledSchema compiled, R record, Unmarshaller unmarshaller) {
+    final Object input = this.isKey ? record.key() : record.value();
+    final SchemaAndValue transformed;
+    if (input instanceof byte[] || input instanceof String) {
+      try {
+        transformed = input instanceof byte[] ?
+            processBytes(compiled, record, (byte[]) input, unmarshaller) :
+            processString(compiled, record, (String) input, unmarshaller);
+      } catch (RuntimeException e) {
+        if (null != this.metrics) {
+          this.metrics.failure(e);
+        }
+        throw e;
+      }
+    } else {
+      final Schema inputSchema = this.isKey ? record.keySchema() : record.valueSchema();
+      transformed = process(record, new SchemaAndValue(inputSchema, input));
+    }
+    return null == transformed ? null : newRecord(record, transformed);
+  }
+
+  /**
+   * Records the size of the input and returns the time parsing started, or 0 if metrics are
+   * disabled.
+   */
+  private long start(long size) {
+    if (null == this.metrics) {
+      return 0L;
+    }
+    this.metrics.record(size);
+    return System.nanoTime();
+  }
+
+  /**
+   * Converts the parsed element to a struct. Parsing and conversion are timed separately. In the
+   * STAX mode the struct is built while parsing so only the parse time is recorded.
+   */
+  private SchemaAndValue convert(CompiledSchema compiled, Object element, long start) {
+    if (null == this.metrics) {
+      return compiled.schemaAndValue(element);
+    }
+    final long parsed = System.nanoTime();
+    this.metrics.parseTime(start, parsed);
+    final SchemaAndValue result = compiled.schemaAndValue(element);
+    if (!(element instanceof Struct)) {
+      this.metrics.toStructTime(parsed, System.nanoTime());
+    }
+    return result;
   }
 
   @Override
   public void configure(Map<String, ?> settings) {
+    final long start = System.nanoTime();
     this.config = new FromXmlConfig(settings);
-    this.compiler = new XSDCompiler(this.config);
 
+    if (this.config.compileAsyncEnabled) {
+      log.info("configure() - Compiling schema in the background.");
+      this.compilation = CompletableFuture.runAsync(() -> initialize(start), COMPILER);
+    } else {
+      initialize(start);
+    }
+  }
+
+  /**
+   * Waits for a background compilation started by {@link #configure(Map)} to complete. Once it has
+   * completed successfully this only reads a volatile field.
+   */
+  void await() {
+    final CompletableFuture<Void> compilation = this.compilation;
+    if (null == compilation) {
+      return;
+    }
     try {
-      this.context = compiler.compileContext();
+      compilation.get(this.config.compileAsyncTimeoutMs, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      throw new ConnectException(
+          String.format(
+              "Schema compilation did not complete within %s ms. Increase %s if the schema is expected to take longer.",
+              this.config.compileAsyncTimeoutMs,
+              FromXmlConfig.COMPILE_ASYNC_TIMEOUT_MS_CONFIG
+          )
+      );
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new ConnectException("Exception thrown while compiling schema", e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ConnectException("Interrupted while waiting for schema compilation", e);
+    }
+    this.compilation = null;
+  }
+
+  /**
+   * Compiles the schema and sets up everything that depends on the generated classes.
+   */
+  void initialize(long start) {
+    this.inputFactory = XMLInputFactories.create(this.config);
+    try {
+      this.compiled = CompiledSchema.compile(this.config, this.inputFactory);
     } catch (IOException e) {
       throw new IllegalStateException(e);
     }
 
+    if (this.config.batchParallelism > 1) {
+      this.executor = new ForkJoinPool(this.config.batchParallelism);
+    }
+
+    if (this.config.metricsEnabled) {
+      this.metrics = FromXmlMetrics.acquire(this.config.metricsConnectorName, this.isKey);
+      this.metrics.constant(
+          "compile-time-ms",
+          "The time in ms it took to compile the schema, or load it from the cache.",
+          this.compiled.registration.compileTimeMs()
+      );
+      this.metrics.constant(
+          "configure-time-ms",
+          "The time in ms it took to configure the transformation.",
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+      );
+    }
+
+    if (this.config.schemaReloadIntervalMs > 0) {
+      this.reload = RELOADER.scheduleWithFixedDelay(
+          this::reload,
+          this.config.schemaReloadIntervalMs,
+          this.config.schemaReloadIntervalMs,
+          TimeUnit.MILLISECONDS
+      );
+    }
+  }
+
+  /**
+   * Returns the compiled schema to convert the next record or batch with. A schema that was
+   * reloaded in the background is swapped in here. The caller holds a reference to the returned
+   * schema and must close it once it is done, so the previous schema is only closed after the
+   * records that are still being converted with it on other threads are done.
+   */
+  CompiledSchema acquire() {
+    await();
+    final CompiledSchema next = this.pending.getAndSet(null);
+    if (null != next) {
+      final CompiledSchema previous = this.compiled;
+      this.compiled = next;
+      log.info("acquire() - Switched from schema {} to {}", previous.key(), next.key());
+      previous.close();
+    }
+    while (true) {
+      final CompiledSchema compiled = this.compiled;
+      if (compiled.retain()) {
+        return compiled;
+      }
+      // Another thread swapped the schema in between, unless the transformation was closed.
+      if (compiled == this.compiled) {
+        throw new IllegalStateException("The transformation has been closed.");
+      }
+    }
+  }
+
+  /**
+   * Checks if the content of the schemas changed and compiles the new version. The previous
+   * version stays in use if the schema has not changed or the new version does not compile.
+   */
+  void reload() {
+    final CompiledSchema pending = this.pending.get();
+    final String currentKey = (null != pending ? pending : this.compiled).key();
+    final String key;
+    try (XSDCompiler compiler = new XSDCompiler(this.config)) {
+      key = compiler.cacheKey();
+    } catch (IOException | RuntimeException e) {
+      log.warn("reload() - Exception thrown while reading schema. Keeping schema {}", currentKey, e);
+      return;
+    }
+    if (key.equals(currentKey) || key.equals(this.failedKey)) {
+      log.trace("reload() - Schema {} has not changed.", key);
+      return;
+    }
+
+    log.info("reload() - Schema changed from {} to {}. Compiling.", currentKey, key);
+    final CompiledSchema next;
     try {
-      this.unmarshaller = context.createUnmarshaller();
-    } catch (JAXBException e) {
-      throw new IllegalStateException(e);
+      next = CompiledSchema.compile(this.config, this.inputFactory);
+    } catch (IOException | RuntimeException e) {
+      log.error("reload() - Exception thrown while compiling schema {}. Keeping schema {}", key, currentKey, e);
+      this.failedKey = key;
+      return;
+    }
+    final CompiledSchema replaced = this.pending.getAndSet(next);
+    if (null != replaced) {
+      replaced.close();
+    }
+    if (this.closed) {
+      final CompiledSchema abandoned = this.pending.getAndSet(null);
+      if (null != abandoned) {
+        abandoned.close();
+      }
     }
   }
 
+  /**
+   * Method is used to split the xml in the key or value of a record into a record for every
+   * element at {@link FromXmlConfig#SPLIT_ELEMENT_PATH_CONFIG}. The returned iterator reads the
+   * document as it is consumed so only the current element is held in memory.
+   *
+   * @param record record to split.
+   * @return records for each element, in document order.
+   */
+  public Iterator<R> split(R record) {
+    final Object input = this.isKey ? record.key() : record.value();
+    final Iterator<Struct> structs;
+    if (input instanceof byte[]) {
+      try {
+        structs = splitter().split(
+            Decompression.open(this.config.inputCompression, (byte[]) input),
+            this.config.inputCharset,
+            true
+        );
+      } catch (XMLStreamException | IOException e) {
+        throw new DataException("Exception thrown while processing xml", e);
+      }
+    } else if (input instanceof String) {
+      try {
+        structs = splitter().split(new StringReader((String) input));
+      } catch (XMLStreamException e) {
+        throw new DataException("Exception thrown while processing xml", e);
+      }
+    } else {
+      throw new DataException(
+          String.format("%s is not a supported type", null == input ? "null" : input.getClass())
+      );
+    }
+    return Iterators.transform(structs, struct -> newRecord(record, new SchemaAndValue(struct.schema(), struct)));
+  }
+
+  /**
+   * Method is used to split a stream of xml into a struct for every element at
+   * {@link FromXmlConfig#SPLIT_ELEMENT_PATH_CONFIG}. This allows a source to split documents
+   * that are too large to be read into memory. The stream is not closed.
+   *
+   * @param inputStream stream to read the xml from.
+   * @return structs for each element, in document order.
+   */
+  public Iterator<Struct> split(InputStream inputStream) {
+    try {
+      return splitter().split(inputStream, this.config.inputCharset);
+    } catch (XMLStreamException e) {
+      throw new DataException("Exception thrown while processing xml", e);
+    }
+  }
+
+  /**
+   * The splitter only reads the bindings, which stay usable after the schema is closed, so the
+   * reference is not held while the returned iterator is consumed.
+   */
+  private StaxStructSplitter splitter() {
+    final StaxStructSplitter splitter;
+    try (CompiledSchema compiled = acquire()) {
+      splitter = compiled.splitter;
+    }
+    if (null == splitter) {
+      throw new IllegalStateException(
+          String.format("%s must be set to split records.", FromXmlConfig.SPLIT_ELEMENT_PATH_CONFIG)
+      );
+    }
+    return splitter;
+  }
+
+  /**
+   * Creates a copy of the record with the key or value replaced.
+   */
+  protected abstract R newRecord(R record, SchemaAndValue transformed);
 
   public static class Key<R extends ConnectRecord<R>> extends FromXml<R> {
     public Key() {
@@ -148,7 +638,11 @@ public abstract class FromXml<R extends ConnectRecord<R>> extends BaseKeyValueTr
     @Override
     public R apply(R r) {
       final SchemaAndValue transformed = process(r, new SchemaAndValue(r.keySchema(), r.key()));
+      return null == transformed ? null : newRecord(r, transformed);
+    }
 
+    @Override
+    protected R newRecord(R r, SchemaAndValue transformed) {
       return r.newRecord(
           r.topic(),
           r.kafkaPartition(),
@@ -169,7 +663,11 @@ public abstract class FromXml<R extends ConnectRecord<R>> extends BaseKeyValueTr
     @Override
     public R apply(R r) {
       final SchemaAndValue transformed = process(r, new SchemaAndValue(r.valueSchema(), r.value()));
+      return null == transformed ? null : newRecord(r, transformed);
+    }
 
+    @Override
+    protected R newRecord(R r, SchemaAndValue transformed) {
       return r.newRecord(
           r.topic(),
           r.kafkaPartition(),
@@ -17,79 +17,402 @@ package com.github.jcustenborder.kafka.connect.transform.xml;
 
 import com.github.jcustenborder.kafka.connect.utils.config.ConfigKeyBuilder;
 import com.github.jcustenborder.kafka.connect.utils.config.ConfigUtils;
-import com.github.jcustenborder.kafka.connect.utils.config.validators.ValidUrl;
-import com.sun.tools.xjc.Options;
-import com.sun.tools.xjc.api.SchemaCompiler;
-import com.sun.tools.xjc.api.XJC;
-import org.apache.kafka.common.config.AbstractConfig;
+import com.github.jcustenborder.kafka.connect.utils.config.Description;
+import com.github.jcustenborder.kafka.connect.utils.config.ValidEnum;
+import com.github.jcustenborder.kafka.connect.utils.config.recommenders.Recommenders;
+import com.github.jcustenborder.kafka.connect.utils.config.validators.Validators;
+import com.google.common.base.Strings;
 import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.common.config.ConfigException;
 
-import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
-class FromXmlConfig extends AbstractConfig {
+class FromXmlConfig extends XmlSchemaConfig {
 
-  public static final String SCHEMA_PATH_CONFIG = "schema.path";
-  public static final String PACKAGE_CONFIG = "package";
-  public static final String XJC_OPTIONS_STRICT_CHECK_CONFIG = "xjc.options.strict.check.enabled";
-  public static final String XJC_OPTIONS_AUTOMATIC_NAME_CONFLICT_RESOLUTION_ENABLED_CONFIG = "xjc.options.automatic.name.conflict.resolution.enabled";
-  public static final String XJC_OPTIONS_VERBOSE_CONFIG = "xjc.options.verbose.enabled";
-  static final String SCHEMA_PATH_DOC = "Urls to the schemas to load. http and https paths are supported";
-  static final String PACKAGE_DOC = "The java package xjc will use to generate the source code in. This name will be applied to the resulting schema";
-  static final String XJC_OPTIONS_STRICT_CHECK_DOC = "xjc.options.strict.check.enabled";
-  static final String XJC_OPTIONS_AUTOMATIC_NAME_CONFLICT_RESOLUTION_ENABLED_DOC = "xjc.options.automatic.name.conflict.resolution.enabled";
-  static final String XJC_OPTIONS_VERBOSE_DOC = "xjc.options.verbose.enabled";
-  public final List<URL> schemaUrls;
-  public final String xjcPackage;
-  public final boolean optionsStrictCheck;
-  public final boolean optionsAutomaticNameConflictResolution;
+  public static final String UNMARSHALLER_POOL_SIZE_CONFIG = "unmarshaller.pool.size";
+  public static final String INPUT_CHARSET_CONFIG = "input.charset";
+  public static final String INPUT_COMPRESSION_CONFIG = "input.compression";
+  public static final String CONVERSION_MODE_CONFIG = "conversion.mode";
+  public static final String PROJECTION_PATHS_CONFIG = "projection.paths";
+  public static final String SPLIT_ELEMENT_PATH_CONFIG = "split.element.path";
+  public static final String LAZY_STRUCT_ENABLED_CONFIG = "lazy.struct.enabled";
+  public static final String REFLECTION_CONVERSION_ENABLED_CONFIG = "reflection.conversion.enabled";
+  public static final String BATCH_PARALLELISM_CONFIG = "batch.parallelism";
+  public static final String BATCH_PARALLEL_MIN_RECORDS_CONFIG = "batch.parallel.min.records";
+  public static final String PARSER_BACKEND_CONFIG = "parser.backend";
+  public static final String PARSER_DTD_ENABLED_CONFIG = "parser.dtd.enabled";
+  public static final String PARSER_EXTERNAL_ENTITIES_ENABLED_CONFIG = "parser.external.entities.enabled";
+  public static final String PARSER_NAMESPACE_AWARE_CONFIG = "parser.namespace.aware";
+  public static final String PARSER_VALIDATING_CONFIG = "parser.validating";
+  public static final String VALIDATION_ENABLED_CONFIG = "validation.enabled";
+  public static final String VALIDATION_SAMPLE_RATE_CONFIG = "validation.sample.rate";
+  public static final String ERROR_MODE_CONFIG = "error.mode";
+  public static final String COMPILE_ASYNC_ENABLED_CONFIG = "compile.async.enabled";
+  public static final String COMPILE_ASYNC_TIMEOUT_MS_CONFIG = "compile.async.timeout.ms";
+  public static final String SCHEMA_RELOAD_INTERVAL_MS_CONFIG = "schema.reload.interval.ms";
+  public static final String METRICS_ENABLED_CONFIG = "metrics.enabled";
+  public static final String METRICS_CONNECTOR_NAME_CONFIG = "metrics.connector.name";
+  static final String UNMARSHALLER_POOL_SIZE_DOC = "The maximum number of idle unmarshallers to keep for reuse. " +
+      "Unmarshallers are not thread safe so each concurrent caller borrows its own instance from the pool. This " +
+      "should be at least the number of threads calling the transformation concurrently.";
+  static final String INPUT_CHARSET_DOC = "The charset used to decode byte input. When blank the bytes are handed " +
+      "directly to the xml parser which detects the encoding from the byte order mark and the xml declaration. " +
+      "Setting this, for example to `UTF-8`, skips detection and overrides the encoding in the xml declaration.";
+  static final String INPUT_COMPRESSION_DOC = "The compression of byte input. Compressed input is decompressed " +
+      "as the parser reads it, so the inflated document is never held in memory as a whole. This does not apply to " +
+      "`FromXml.split(InputStream)`. " + ConfigUtils.enumDescription(Compression.class);
+  static final String CONVERSION_MODE_DOC = "The method used to convert xml to a struct. " +
+      ConfigUtils.enumDescription(ConversionMode.class);
+  static final String PROJECTION_PATHS_DOC = "Paths to the elements to keep, relative to the root element. For " +
+      "example `book/title` keeps only the title of each book. A path that ends on a complex element keeps the whole " +
+      "element and attributes can be selected with `@name`. The schema of the output only contains the selected fields " +
+      "and the xml of every other element is skipped without being converted. When set the xml is read with StAX " +
+      "regardless of `" + CONVERSION_MODE_CONFIG + "`. When there is more than one root element, for example with `" +
+      SCHEMA_SETS_CONFIG + "`, each path is applied to the root elements that have it and root elements that none of " +
+      "the paths match are read in full. A path that no root element has is an error.";
+  static final String SPLIT_ELEMENT_PATH_DOC = "Path to a repeating element, relative to the root element, that " +
+      "marks the record boundary when a document is split with `FromXml.split()`. For example `book` returns a record " +
+      "for every book. The document is streamed so only one element is held in memory at a time. This setting does " +
+      "not change `apply()`, which always converts the whole document.";
+  static final String LAZY_STRUCT_ENABLED_DOC = "Flag to determine if the struct should be converted from the " +
+      "unmarshalled xml on first access rather than up front. Each nested struct is converted when it is first read, " +
+      "so records that are filtered or have fields dropped by later transformations never pay for the subtrees that " +
+      "are not read. This only applies to the `JAXB` conversion mode.";
+  static final String REFLECTION_CONVERSION_ENABLED_DOC = "Flag to determine if the struct is converted from the " +
+      "unmarshalled xml by reading the fields with reflection rather than calling the `toStruct()` method generated " +
+      "by the xjc plugin. The fields and their conversions are resolved once at configure time to mirror the " +
+      "generated method. This is disabled by default so the generated method remains the reference conversion. " +
+      "This only applies to the `JAXB` conversion mode.";
+  static final String BATCH_PARALLELISM_DOC = "The number of threads used to convert a batch passed to " +
+      "`FromXml.apply(Collection)`. Each thread uses its own unmarshaller and the output is returned in the order of " +
+      "the input. The default of 1 converts batches on the calling thread.";
+  static final String BATCH_PARALLEL_MIN_RECORDS_DOC = "Batches with fewer records than this are converted on the " +
+      "calling thread even when `" + BATCH_PARALLELISM_CONFIG + "` is greater than 1.";
+  static final String PARSER_BACKEND_DOC = "The StAX implementation used to parse xml. " +
+      ConfigUtils.enumDescription(ParserBackend.class);
+  static final String PARSER_DTD_ENABLED_DOC = "Flag to determine if document type definitions are processed. " +
+      "This is disabled by default because DTD processing is slow and allows entity expansion attacks.";
+  static final String PARSER_EXTERNAL_ENTITIES_ENABLED_DOC = "Flag to determine if external entities are resolved. " +
+      "This is disabled by default because resolving entities reads files or urls named by the document.";
+  static final String PARSER_NAMESPACE_AWARE_DOC = "Flag to determine if the parser processes namespaces. The `JAXB` " +
+      "conversion mode requires namespaces to match the root element, so this can only be disabled with the `STAX` " +
+      "conversion mode or `" + PROJECTION_PATHS_CONFIG + "`. Those only use local names, so this can be disabled for " +
+      "documents that do not use namespace prefixes.";
+  static final String PARSER_VALIDATING_DOC = "Flag to determine if the parser validates the document against its DTD. " +
+      "Only takes effect if `" + PARSER_DTD_ENABLED_CONFIG + "` is enabled and the parser supports validation.";
+  static final String VALIDATION_ENABLED_DOC = "Flag to determine if documents are validated against the schemas in `" +
+      SCHEMA_PATH_CONFIG + "`. Documents that are not valid fail with a DataException that describes the problem. In " +
+      "the `JAXB` conversion mode documents are validated while they are unmarshalled. In the `STAX` conversion mode " +
+      "documents are validated while they are read, including the elements that are skipped by `" +
+      PROJECTION_PATHS_CONFIG + "`, so either way each document is only parsed once.";
+  static final String VALIDATION_SAMPLE_RATE_DOC = "Validate every Nth document when `" + VALIDATION_ENABLED_CONFIG +
+      "` is enabled. The default of 1 validates every document.";
+  static final String ERROR_MODE_DOC = "How records that cannot be parsed or are not valid are handled. " +
+      ConfigUtils.enumDescription(ErrorMode.class);
+  static final String COMPILE_ASYNC_ENABLED_DOC = "Flag to determine if the schema is compiled in the background. " +
+      "When enabled configure returns right away and the first record waits for the compilation to complete, " +
+      "so the compilation overlaps with the rest of the task startup.";
+  static final String COMPILE_ASYNC_TIMEOUT_MS_DOC = "The time in milliseconds a record waits for a background " +
+      "compilation to complete before failing. Only used when `" + COMPILE_ASYNC_ENABLED_CONFIG + "` is enabled.";
+  static final String SCHEMA_RELOAD_INTERVAL_MS_DOC = "The interval in milliseconds to check the schemas in `" +
+      SCHEMA_PATH_CONFIG + "` for changes. A schema whose content changed is compiled in the background and used " +
+      "from the next record on, including when a schema they include or import changed. 0 disables reloading.";
+  static final String METRICS_ENABLED_DOC = "Flag to determine if the transformation should register metrics " +
+      "for throughput, parse and conversion latency, failures and compile time with JMX. This is disabled by default " +
+      "because timing each record adds overhead.";
+  static final String METRICS_CONNECTOR_NAME_DOC = "The value of the `connector` tag applied to the metrics. " +
+      "Transformations are not told which connector they belong to, so set this to the name of the connector to " +
+      "tell the metrics of each pipeline apart. Transformations with the same connector name in a worker, such as " +
+      "the tasks of a connector, report their metrics together.";
+  public final int unmarshallerPoolSize;
+  public final Charset inputCharset;
+  public final Compression inputCompression;
+  public final ConversionMode conversionMode;
+  public final List<String> projectionPaths;
+  public final String splitElementPath;
+  public final boolean lazyStructEnabled;
+  public final boolean reflectionConversionEnabled;
+  public final int batchParallelism;
+  public final int batchParallelMinRecords;
+  public final ParserBackend parserBackend;
+  public final boolean parserDtdEnabled;
+  public final boolean parserExternalEntitiesEnabled;
+  public final boolean parserNamespaceAware;
+  public final boolean parserValidating;
+  public final boolean validationEnabled;
+  public final int validationSampleRate;
+  public final ErrorMode errorMode;
+  public final boolean compileAsyncEnabled;
+  public final long compileAsyncTimeoutMs;
+  public final long schemaReloadIntervalMs;
+  public final boolean metricsEnabled;
+  public final String metricsConnectorName;
 
   public FromXmlConfig(Map<?, ?> originals) {
-    super(config(), originals);
-    this.schemaUrls = ConfigUtils.urls(this, SCHEMA_PATH_CONFIG);
-    this.xjcPackage = getString(PACKAGE_CONFIG);
-    this.optionsStrictCheck = getBoolean(XJC_OPTIONS_STRICT_CHECK_CONFIG);
-    this.optionsAutomaticNameConflictResolution = getBoolean(XJC_OPTIONS_AUTOMATIC_NAME_CONFLICT_RESOLUTION_ENABLED_CONFIG);
+    this(config(), originals);
   }
 
-  public static ConfigDef config() {
-    SchemaCompiler schemaCompiler = XJC.createSchemaCompiler();
-    Options options = schemaCompiler.getOptions();
+  protected FromXmlConfig(ConfigDef definition, Map<?, ?> originals) {
+    super(definition, originals);
+    this.unmarshallerPoolSize = getInt(UNMARSHALLER_POOL_SIZE_CONFIG);
+    final String inputCharset = getString(INPUT_CHARSET_CONFIG);
+    this.inputCharset = Strings.isNullOrEmpty(inputCharset) ? null : Charset.forName(inputCharset);
+    this.inputCompression = ConfigUtils.getEnum(Compression.class, this, INPUT_COMPRESSION_CONFIG);
+    this.conversionMode = ConfigUtils.getEnum(ConversionMode.class, this, CONVERSION_MODE_CONFIG);
+    this.projectionPaths = getList(PROJECTION_PATHS_CONFIG);
+    this.splitElementPath = getString(SPLIT_ELEMENT_PATH_CONFIG);
+    this.lazyStructEnabled = getBoolean(LAZY_STRUCT_ENABLED_CONFIG);
+    this.reflectionConversionEnabled = getBoolean(REFLECTION_CONVERSION_ENABLED_CONFIG);
+    this.batchParallelism = getInt(BATCH_PARALLELISM_CONFIG);
+    this.batchParallelMinRecords = getInt(BATCH_PARALLEL_MIN_RECORDS_CONFIG);
+    this.parserBackend = ConfigUtils.getEnum(ParserBackend.class, this, PARSER_BACKEND_CONFIG);
+    this.parserDtdEnabled = getBoolean(PARSER_DTD_ENABLED_CONFIG);
+    this.parserExternalEntitiesEnabled = getBoolean(PARSER_EXTERNAL_ENTITIES_ENABLED_CONFIG);
+    this.parserNamespaceAware = getBoolean(PARSER_NAMESPACE_AWARE_CONFIG);
+    this.parserValidating = getBoolean(PARSER_VALIDATING_CONFIG);
+    this.validationEnabled = getBoolean(VALIDATION_ENABLED_CONFIG);
+    this.validationSampleRate = getInt(VALIDATION_SAMPLE_RATE_CONFIG);
+    this.errorMode = ConfigUtils.getEnum(ErrorMode.class, this, ERROR_MODE_CONFIG);
+    this.compileAsyncEnabled = getBoolean(COMPILE_ASYNC_ENABLED_CONFIG);
+    this.compileAsyncTimeoutMs = getLong(COMPILE_ASYNC_TIMEOUT_MS_CONFIG);
+    this.schemaReloadIntervalMs = getLong(SCHEMA_RELOAD_INTERVAL_MS_CONFIG);
+    this.metricsEnabled = getBoolean(METRICS_ENABLED_CONFIG);
+    this.metricsConnectorName = getString(METRICS_CONNECTOR_NAME_CONFIG);
+
+    if (this.validationEnabled) {
+      // Validation needs the schemas, which precompiled sets can leave out.
+      for (SchemaSet schemaSet : this.schemaSets) {
+        if (schemaSet.urls.isEmpty()) {
+          throw new ConfigException(
+              schemaSet.pathConfig,
+              schemaSet.urls,
+              String.format("Must be set when '%s' is enabled.", VALIDATION_ENABLED_CONFIG)
+          );
+        }
+      }
+    }
+
+    if (ModelSource.PRECOMPILED == this.modelSource && this.schemaReloadIntervalMs > 0) {
+      throw new ConfigException(
+          SCHEMA_RELOAD_INTERVAL_MS_CONFIG,
+          this.schemaReloadIntervalMs,
+          String.format("Precompiled classes cannot be reloaded. Set '%s' to '%s'.", MODEL_SOURCE_CONFIG, ModelSource.COMPILE)
+      );
+    }
+    // Projection reads the xml with StAX whatever the conversion mode is.
+    if (!this.parserNamespaceAware && ConversionMode.JAXB == this.conversionMode && this.projectionPaths.isEmpty()) {
+      throw new ConfigException(
+          PARSER_NAMESPACE_AWARE_CONFIG,
+          false,
+          String.format("The '%s' conversion mode requires a namespace aware parser. Set '%s' to '%s'.", ConversionMode.JAXB, CONVERSION_MODE_CONFIG, ConversionMode.STAX)
+      );
+    }
+  }
 
-    return new ConfigDef()
+  public static ConfigDef config() {
+    return XmlSchemaConfig.config()
         .define(
-            ConfigKeyBuilder.of(SCHEMA_PATH_CONFIG, ConfigDef.Type.LIST)
-                .documentation(SCHEMA_PATH_DOC)
-                .importance(ConfigDef.Importance.HIGH)
-                .validator(new ValidUrl())
+            ConfigKeyBuilder.of(UNMARSHALLER_POOL_SIZE_CONFIG, ConfigDef.Type.INT)
+                .documentation(UNMARSHALLER_POOL_SIZE_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(4)
+                .validator(ConfigDef.Range.atLeast(1))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(INPUT_CHARSET_CONFIG, ConfigDef.Type.STRING)
+                .documentation(INPUT_CHARSET_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue("")
+                .validator(Validators.blankOr(Validators.validCharset()))
+                .recommender(Recommenders.charset())
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(INPUT_COMPRESSION_CONFIG, ConfigDef.Type.STRING)
+                .documentation(INPUT_COMPRESSION_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(Compression.NONE.name())
+                .validator(ValidEnum.of(Compression.class))
+                .recommender(Recommenders.enumValues(Compression.class))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(CONVERSION_MODE_CONFIG, ConfigDef.Type.STRING)
+                .documentation(CONVERSION_MODE_DOC)
+                .importance(ConfigDef.Importance.MEDIUM)
+                .defaultValue(ConversionMode.JAXB.name())
+                .validator(ValidEnum.of(ConversionMode.class))
+                .recommender(Recommenders.enumValues(ConversionMode.class))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(PROJECTION_PATHS_CONFIG, ConfigDef.Type.LIST)
+                .documentation(PROJECTION_PATHS_DOC)
+                .importance(ConfigDef.Importance.MEDIUM)
+                .defaultValue(Collections.emptyList())
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(SPLIT_ELEMENT_PATH_CONFIG, ConfigDef.Type.STRING)
+                .documentation(SPLIT_ELEMENT_PATH_DOC)
+                .importance(ConfigDef.Importance.MEDIUM)
+                .defaultValue("")
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(LAZY_STRUCT_ENABLED_CONFIG, ConfigDef.Type.BOOLEAN)
+                .documentation(LAZY_STRUCT_ENABLED_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(false)
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(REFLECTION_CONVERSION_ENABLED_CONFIG, ConfigDef.Type.BOOLEAN)
+                .documentation(REFLECTION_CONVERSION_ENABLED_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(false)
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(BATCH_PARALLELISM_CONFIG, ConfigDef.Type.INT)
+                .documentation(BATCH_PARALLELISM_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(1)
+                .validator(ConfigDef.Range.atLeast(1))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(BATCH_PARALLEL_MIN_RECORDS_CONFIG, ConfigDef.Type.INT)
+                .documentation(BATCH_PARALLEL_MIN_RECORDS_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(64)
+                .validator(ConfigDef.Range.atLeast(1))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(PARSER_BACKEND_CONFIG, ConfigDef.Type.STRING)
+                .documentation(PARSER_BACKEND_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(ParserBackend.DEFAULT.name())
+                .validator(ValidEnum.of(ParserBackend.class))
+                .recommender(Recommenders.enumValues(ParserBackend.class))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(PARSER_DTD_ENABLED_CONFIG, ConfigDef.Type.BOOLEAN)
+                .documentation(PARSER_DTD_ENABLED_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(false)
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(PARSER_EXTERNAL_ENTITIES_ENABLED_CONFIG, ConfigDef.Type.BOOLEAN)
+                .documentation(PARSER_EXTERNAL_ENTITIES_ENABLED_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(false)
                 .build()
         ).define(
-            ConfigKeyBuilder.of(PACKAGE_CONFIG, ConfigDef.Type.STRING)
-                .documentation(PACKAGE_DOC)
-                .importance(ConfigDef.Importance.HIGH)
-                .defaultValue(FromXmlConfig.class.getPackage().getName() + ".model")
+            ConfigKeyBuilder.of(PARSER_NAMESPACE_AWARE_CONFIG, ConfigDef.Type.BOOLEAN)
+                .documentation(PARSER_NAMESPACE_AWARE_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(true)
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(PARSER_VALIDATING_CONFIG, ConfigDef.Type.BOOLEAN)
+                .documentation(PARSER_VALIDATING_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(false)
                 .build()
         ).define(
-            ConfigKeyBuilder.of(XJC_OPTIONS_STRICT_CHECK_CONFIG, ConfigDef.Type.BOOLEAN)
-                .documentation(XJC_OPTIONS_STRICT_CHECK_DOC)
+            ConfigKeyBuilder.of(VALIDATION_ENABLED_CONFIG, ConfigDef.Type.BOOLEAN)
+                .documentation(VALIDATION_ENABLED_DOC)
+                .importance(ConfigDef.Importance.MEDIUM)
+                .defaultValue(false)
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(VALIDATION_SAMPLE_RATE_CONFIG, ConfigDef.Type.INT)
+                .documentation(VALIDATION_SAMPLE_RATE_DOC)
                 .importance(ConfigDef.Importance.LOW)
-                .defaultValue(options.strictCheck)
+                .defaultValue(1)
+                .validator(ConfigDef.Range.atLeast(1))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(ERROR_MODE_CONFIG, ConfigDef.Type.STRING)
+                .documentation(ERROR_MODE_DOC)
+                .importance(ConfigDef.Importance.MEDIUM)
+                .defaultValue(ErrorMode.FAIL.name())
+                .validator(ValidEnum.of(ErrorMode.class))
+                .recommender(Recommenders.enumValues(ErrorMode.class))
                 .build()
         ).define(
-            ConfigKeyBuilder.of(XJC_OPTIONS_AUTOMATIC_NAME_CONFLICT_RESOLUTION_ENABLED_CONFIG, ConfigDef.Type.BOOLEAN)
-                .documentation(XJC_OPTIONS_AUTOMATIC_NAME_CONFLICT_RESOLUTION_ENABLED_DOC)
+            ConfigKeyBuilder.of(COMPILE_ASYNC_ENABLED_CONFIG, ConfigDef.Type.BOOLEAN)
+                .documentation(COMPILE_ASYNC_ENABLED_DOC)
                 .importance(ConfigDef.Importance.LOW)
-                .defaultValue(options.automaticNameConflictResolution)
+                .defaultValue(false)
                 .build()
         ).define(
-            ConfigKeyBuilder.of(XJC_OPTIONS_VERBOSE_CONFIG, ConfigDef.Type.BOOLEAN)
-                .documentation(XJC_OPTIONS_VERBOSE_DOC)
+            ConfigKeyBuilder.of(COMPILE_ASYNC_TIMEOUT_MS_CONFIG, ConfigDef.Type.LONG)
+                .documentation(COMPILE_ASYNC_TIMEOUT_MS_DOC)
                 .importance(ConfigDef.Importance.LOW)
-                .defaultValue(options.verbose)
+                .defaultValue(300000L)
+                .validator(ConfigDef.Range.atLeast(0))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(SCHEMA_RELOAD_INTERVAL_MS_CONFIG, ConfigDef.Type.LONG)
+                .documentation(SCHEMA_RELOAD_INTERVAL_MS_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(0L)
+                .validator(ConfigDef.Range.atLeast(0))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(METRICS_ENABLED_CONFIG, ConfigDef.Type.BOOLEAN)
+                .documentation(METRICS_ENABLED_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(false)
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(METRICS_CONNECTOR_NAME_CONFIG, ConfigDef.Type.STRING)
+                .documentation(METRICS_CONNECTOR_NAME_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue("unknown")
+                .validator(new ConfigDef.NonEmptyString())
                 .build()
         );
   }
 
+  public enum ConversionMode {
+    @Description("Unmarshal the xml to the classes generated by xjc and convert them to a struct.")
+    JAXB,
+    @Description("Read the xml with StAX and populate the struct directly without creating the classes generated by xjc.")
+    STAX
+  }
+
+  public enum Compression {
+    @Description("The input is not compressed.")
+    NONE,
+    @Description("Detect gzip, zstd and snappy from the header of the input. Input without a known header is read " +
+        "as is.")
+    AUTO,
+    @Description("The input is compressed with gzip.")
+    GZIP,
+    @Description("The input is compressed with zstd.")
+    ZSTD,
+    @Description("The input is compressed with the snappy-java stream format or the snappy framing format.")
+    SNAPPY
+  }
 
+  public enum ErrorMode {
+    @Description("Throw a DataException which fails the task unless the connector tolerates errors.")
+    FAIL,
+    @Description("Drop the record.")
+    SKIP,
+    @Description("Return the record with the xml left as is.")
+    PASSTHROUGH,
+    @Description("Replace the xml with a struct that describes the error, including the line and column where it occurred.")
+    ERROR_STRUCT
+  }
+
+  public enum ParserBackend {
+    @Description("Use the implementation found by `XMLInputFactory.newFactory()`, which honors the " +
+        "`javax.xml.stream.XMLInputFactory` system property and service loader.")
+    DEFAULT,
+    @Description("Use the implementation built into the JDK.")
+    JDK,
+    @Description("Use Woodstox. The woodstox-core jar must be added to the plugin path.")
+    WOODSTOX,
+    @Description("Use Aalto. The aalto-xml jar must be added to the plugin path.")
+    AALTO
+  }
 }
@@ -0,0 +1,196 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.transform.xml;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.metrics.JmxReporter;
+import org.apache.kafka.common.metrics.Measurable;
+import org.apache.kafka.common.metrics.MetricConfig;
+import org.apache.kafka.common.metrics.Metrics;
+import org.apache.kafka.common.metrics.MetricsReporter;
+import org.apache.kafka.common.metrics.Sensor;
+import org.apache.kafka.common.metrics.stats.Avg;
+import org.apache.kafka.common.metrics.stats.Max;
+import org.apache.kafka.common.metrics.stats.Meter;
+import org.apache.kafka.common.metrics.stats.Percentile;
+import org.apache.kafka.common.metrics.stats.Percentiles;
+import org.apache.kafka.common.utils.Time;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Metrics of the transformation. Metrics are registered with a {@link JmxReporter} under the
+ * {@code kafka.connect.transform.xml} domain and are tagged with the connector and whether the
+ * transformation is applied to the key or the value. Transformations are not told which task they
+ * belong to, so the tasks of a connector in the same worker share one instance, which keeps the
+ * names of the MBeans stable across restarts.
+ */
+class FromXmlMetrics implements Closeable {
+  static final String JMX_PREFIX = "kafka.connect.transform.xml";
+  static final String GROUP = "from-xml-metrics";
+  static final int PERCENTILES_SIZE_IN_BYTES = 4000;
+  /**
+   * The bins of the percentiles widen with the latency, so the maximum is kept low to measure the
+   * sub millisecond latencies of small documents. Latencies above it are reported as the maximum.
+   */
+  static final double MAX_LATENCY_MS = 500D;
+  static final Map<Map<String, String>, FromXmlMetrics> INSTANCES = new HashMap<>();
+
+  final Metrics metrics;
+  final Map<String, String> tags;
+  final Sensor records;
+  final Sensor bytes;
+  final Sensor parseTime;
+  final Sensor toStructTime;
+  final Sensor failures;
+  final ConcurrentMap<Class<?>, Sensor> failuresByType = new ConcurrentHashMap<>();
+  int references;
+
+  FromXmlMetrics(Map<String, String> tags) {
+    final List<MetricsReporter> reporters = Collections.singletonList(new JmxReporter(JMX_PREFIX));
+    this.metrics = new Metrics(new MetricConfig(), reporters, Time.SYSTEM);
+    this.tags = tags;
+
+    this.records = this.metrics.sensor("records");
+    this.records.add(new Meter(
+        metricName("record-rate", "The number of records processed per second."),
+        metricName("record-total", "The total number of records processed.")
+    ));
+    this.bytes = this.metrics.sensor("bytes");
+    this.bytes.add(new Meter(
+        metricName("bytes-in-rate", "The number of bytes processed per second. String input is counted in characters."),
+        metricName("bytes-in-total", "The total number of bytes processed. String input is counted in characters.")
+    ));
+    this.parseTime = latencySensor("parse-time", "parsing the xml");
+    this.toStructTime = latencySensor("to-struct-time", "converting the parsed xml to a struct");
+    this.failures = this.metrics.sensor("failures");
+    this.failures.add(new Meter(
+        metricName("failure-rate", "The number of records that failed per second."),
+        metricName("failure-total", "The total number of records that failed.")
+    ));
+  }
+
+  /**
+   * Method is used to get the metrics of a connector. Each call must be followed by a call to
+   * {@link #close()}.
+   *
+   * @param connector value of the connector tag.
+   * @param isKey true if the transformation is applied to the key.
+   * @return metrics shared by every transformation with the same tags.
+   */
+  static FromXmlMetrics acquire(String connector, boolean isKey) {
+    final Map<String, String> tags = ImmutableMap.of(
+        "connector", connector,
+        "mode", isKey ? "key" : "value"
+    );
+    synchronized (INSTANCES) {
+      final FromXmlMetrics result = INSTANCES.computeIfAbsent(tags, FromXmlMetrics::new);
+      result.references++;
+      return result;
+    }
+  }
+
+  MetricName metricName(String name, String description) {
+    return this.metrics.metricName(name, GROUP, description, this.tags);
+  }
+
+  MetricName metricName(String name, String description, Map<String, String> extraTags) {
+    final Map<String, String> tags = new LinkedHashMap<>(this.tags);
+    tags.putAll(extraTags);
+    return this.metrics.metricName(name, GROUP, description, tags);
+  }
+
+  Sensor latencySensor(String name, String description) {
+    final Sensor sensor = this.metrics.sensor(name);
+    sensor.add(metricName(name + "-avg", "The average time in ms spent " + description + "."), new Avg());
+    sensor.add(metricName(name + "-max", "The maximum time in ms spent " + description + "."), new Max());
+    sensor.add(new Percentiles(
+        PERCENTILES_SIZE_IN_BYTES,
+        MAX_LATENCY_MS,
+        Percentiles.BucketSizing.LINEAR,
+        new Percentile(metricName(name + "-p50", "The median time in ms spent " + description + "."), 50),
+        new Percentile(metricName(name + "-p95", "The 95th percentile time in ms spent " + description + "."), 95),
+        new Percentile(metricName(name + "-p99", "The 99th percentile time in ms spent " + description + "."), 99)
+    ));
+    return sensor;
+  }
+
+  /**
+   * Method is used to register a metric whose value is fixed once the transformation is
+   * configured. The value of the transformation that was configured last is reported.
+   */
+  void constant(String name, String description, double value) {
+    final MetricName metricName = metricName(name, description);
+    synchronized (this.metrics) {
+      this.metrics.removeMetric(metricName);
+      this.metrics.addMetric(metricName, (Measurable) (config, now) -> value);
+    }
+  }
+
+  void record(long size) {
+    this.records.record();
+    this.bytes.record(size);
+  }
+
+  void parseTime(long startNanos, long endNanos) {
+    this.parseTime.record(toMillis(endNanos - startNanos));
+  }
+
+  void toStructTime(long startNanos, long endNanos) {
+    this.toStructTime.record(toMillis(endNanos - startNanos));
+  }
+
+  void failure(Throwable throwable) {
+    this.failures.record();
+    final Throwable cause = null != throwable.getCause() ? throwable.getCause() : throwable;
+    this.failuresByType.computeIfAbsent(cause.getClass(), type -> {
+      final Map<String, String> extraTags = ImmutableMap.of("exception", type.getName());
+      final Sensor sensor = this.metrics.sensor("failures-" + type.getName());
+      sensor.add(new Meter(
+          metricName("failure-rate", "The number of records that failed per second with this exception.", extraTags),
+          metricName("failure-total", "The total number of records that failed with this exception.", extraTags)
+      ));
+      return sensor;
+    }).record();
+  }
+
+  static double toMillis(long nanos) {
+    return nanos / 1000000D;
+  }
+
+  /**
+   * Releases the reference taken by {@link #acquire(String, boolean)}. The metrics are
+   * unregistered once the last transformation using them is closed.
+   */
+  @Override
+  public void close() {
+    synchronized (INSTANCES) {
+      if (--this.references > 0) {
+        return;
+      }
+      INSTANCES.remove(this.tags);
+    }
+    this.metrics.close();
+  }
+}
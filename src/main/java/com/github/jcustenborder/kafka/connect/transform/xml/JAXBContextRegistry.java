@@ -0,0 +1,176 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.transform.xml;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.validation.Schema;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process wide registry of compiled JAXBContexts. Every transform instance that is configured
+ * with the same schema content, package and xjc options shares a single compiled context. Entries
+ * are reference counted and the underlying {@link XSDCompiler} is closed when the last
+ * registration is released.
+ */
+class JAXBContextRegistry {
+  private static final Logger log = LoggerFactory.getLogger(JAXBContextRegistry.class);
+  static final Map<String, Entry> ENTRIES = new HashMap<>();
+
+  private JAXBContextRegistry() {
+
+  }
+
+  /**
+   * Method is used to acquire a compiled context for the supplied config. If another transform
+   * has already compiled the same schema the existing context is returned.
+   *
+   * @param config config to compile the schema with.
+   * @return registration that must be closed once the context is no longer used.
+   * @throws IOException thrown if the schema could not be read or compiled.
+   */
+  public static Registration acquire(XmlSchemaConfig config) throws IOException {
+    final XSDCompiler compiler = new XSDCompiler(config);
+    final String key = compiler.cacheKey();
+    final Entry entry;
+
+    synchronized (ENTRIES) {
+      entry = ENTRIES.computeIfAbsent(key, k -> new Entry(k, compiler));
+      entry.references++;
+      log.trace("acquire() - key = '{}' references = {}", key, entry.references);
+    }
+
+    if (entry.compiler != compiler) {
+      compiler.close();
+    }
+
+    final Registration registration = new Registration(entry);
+    try {
+      entry.context();
+    } catch (IOException | RuntimeException e) {
+      registration.close();
+      throw e;
+    }
+    return registration;
+  }
+
+  static void release(Entry entry) throws IOException {
+    final boolean last;
+    synchronized (ENTRIES) {
+      entry.references--;
+      log.trace("release() - key = '{}' references = {}", entry.key, entry.references);
+      last = entry.references == 0;
+      if (last) {
+        ENTRIES.remove(entry.key);
+      }
+    }
+
+    if (last) {
+      log.info("release() - Closing compiled schema {}", entry.key);
+      entry.compiler.close();
+    }
+  }
+
+  static class Entry {
+    final String key;
+    final XSDCompiler compiler;
+    JAXBContext context;
+    Schema validationSchema;
+    long compileTimeMs;
+    int references;
+
+    Entry(String key, XSDCompiler compiler) {
+      this.key = key;
+      this.compiler = compiler;
+    }
+
+    /**
+     * Compiles the schema the first time it is called. Callers for the same key block until the
+     * first compilation finishes instead of compiling the schema again.
+     */
+    synchronized JAXBContext context() throws IOException {
+      if (null == this.context) {
+        final long start = System.nanoTime();
+        this.context = this.compiler.compileContext();
+        this.compileTimeMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("context() - Compiled schema {} in {} ms", this.key, this.compileTimeMs);
+      }
+      return this.context;
+    }
+
+    synchronized Schema validationSchema() {
+      if (null == this.validationSchema) {
+        this.validationSchema = this.compiler.compileValidationSchema();
+      }
+      return this.validationSchema;
+    }
+  }
+
+  static class Registration implements Closeable {
+    final Entry entry;
+    boolean closed;
+
+    Registration(Entry entry) {
+      this.entry = entry;
+    }
+
+    public JAXBContext context() throws IOException {
+      return this.entry.context();
+    }
+
+    /**
+     * @return schema used to validate documents. Compiled the first time it is requested.
+     */
+    public Schema validationSchema() {
+      return this.entry.validationSchema();
+    }
+
+    public ClassLoader classLoader() {
+      return this.entry.compiler.classLoader;
+    }
+
+    public Set<String> packages() {
+      return this.entry.compiler.packages();
+    }
+
+    public String key() {
+      return this.entry.key;
+    }
+
+    /**
+     * @return time in ms it took to compile or load the shared context.
+     */
+    public long compileTimeMs() {
+      return this.entry.compileTimeMs;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+      if (this.closed) {
+        return;
+      }
+      this.closed = true;
+      release(this.entry);
+    }
+  }
+}
@@ -0,0 +1,238 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.transform.xml;
+
+import com.github.jcustenborder.kafka.connect.xml.Connectable;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.DataException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * {@link Struct} that is backed by an object generated by xjc. The fields of the struct are
+ * converted the first time any of them is read or written. Nested complex fields are themselves
+ * lazy structs, so a subtree that is never read is never converted.
+ *
+ * A lazy struct is equal to a {@link Struct} with the same schema and values when the lazy struct
+ * is the receiver of {@link #equals(Object)}. {@link Struct#equals(Object)} compares classes so the
+ * reverse is never true.
+ *
+ * The fields are converted once even when the struct is first read from several threads at the
+ * same time, after which reads are as thread safe as they are for a {@link Struct}.
+ */
+class LazyStruct extends Struct {
+  final StructBinding binding;
+  volatile Object source;
+
+  LazyStruct(StructBinding binding, Object source) {
+    super(binding.schema);
+    this.binding = binding;
+    this.source = source;
+  }
+
+  /**
+   * Method is used to create the struct for a jaxb object. Bindings that do not bind every field of
+   * the schema, for example choices, are converted right away with the generated
+   * {@code toStruct()} method because the reflective conversion would leave those fields empty.
+   *
+   * @param binding binding of the type of the source.
+   * @param source jaxb object to convert.
+   * @return lazy struct, or the converted struct if the binding is not complete.
+   */
+  static Struct of(StructBinding binding, Object source) {
+    return binding.complete ? new LazyStruct(binding, source) : ((Connectable) source).toStruct();
+  }
+
+  /**
+   * Converts the fields of the source object. Values put here are not validated beyond their type
+   * because the values of nested lazy structs are not converted yet. The source is only cleared
+   * once every field has been put, so a thread that sees no source also sees the converted fields.
+   */
+  void materialize() {
+    if (null == this.source) {
+      return;
+    }
+    synchronized (this) {
+      final Object source = this.source;
+      if (null == source) {
+        return;
+      }
+      for (StructBinding.FieldBinding fieldBinding : this.binding.fieldBindings()) {
+        final Object value;
+        try {
+          value = fieldBinding.javaField.get(source);
+        } catch (IllegalAccessException e) {
+          throw new DataException("Exception thrown while reading " + fieldBinding.javaField, e);
+        }
+        super.put(fieldBinding.field, convert(fieldBinding, value));
+      }
+      this.source = null;
+    }
+  }
+
+  static Object convert(StructBinding.FieldBinding fieldBinding, Object value) {
+    if (null == value || null == fieldBinding.child) {
+      return fieldBinding.convert(value);
+    }
+    if (!fieldBinding.repeated) {
+      return of(fieldBinding.child, value);
+    }
+    final List<?> input = (List<?>) value;
+    final List<Object> result = new ArrayList<>(input.size());
+    for (Object item : input) {
+      result.add(null == item ? null : of(fieldBinding.child, item));
+    }
+    return result;
+  }
+
+  @Override
+  public Object get(Field field) {
+    materialize();
+    return super.get(field);
+  }
+
+  @Override
+  public Object getWithoutDefault(String fieldName) {
+    materialize();
+    return super.getWithoutDefault(fieldName);
+  }
+
+  @Override
+  public Byte getInt8(String fieldName) {
+    materialize();
+    return super.getInt8(fieldName);
+  }
+
+  @Override
+  public Short getInt16(String fieldName) {
+    materialize();
+    return super.getInt16(fieldName);
+  }
+
+  @Override
+  public Integer getInt32(String fieldName) {
+    materialize();
+    return super.getInt32(fieldName);
+  }
+
+  @Override
+  public Long getInt64(String fieldName) {
+    materialize();
+    return super.getInt64(fieldName);
+  }
+
+  @Override
+  public Float getFloat32(String fieldName) {
+    materialize();
+    return super.getFloat32(fieldName);
+  }
+
+  @Override
+  public Double getFloat64(String fieldName) {
+    materialize();
+    return super.getFloat64(fieldName);
+  }
+
+  @Override
+  public Boolean getBoolean(String fieldName) {
+    materialize();
+    return super.getBoolean(fieldName);
+  }
+
+  @Override
+  public String getString(String fieldName) {
+    materialize();
+    return super.getString(fieldName);
+  }
+
+  @Override
+  public byte[] getBytes(String fieldName) {
+    materialize();
+    return super.getBytes(fieldName);
+  }
+
+  @Override
+  public <T> List<T> getArray(String fieldName) {
+    materialize();
+    return super.getArray(fieldName);
+  }
+
+  @Override
+  public <K, V> Map<K, V> getMap(String fieldName) {
+    materialize();
+    return super.getMap(fieldName);
+  }
+
+  @Override
+  public Struct getStruct(String fieldName) {
+    materialize();
+    return super.getStruct(fieldName);
+  }
+
+  @Override
+  public Struct put(Field field, Object value) {
+    materialize();
+    return super.put(field, value);
+  }
+
+  /**
+   * The values of a struct that has not been converted come from the generated classes so they
+   * already match the schema. Validation is only performed once the struct has been converted.
+   */
+  @Override
+  public void validate() {
+    if (null != this.source) {
+      return;
+    }
+    super.validate();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Struct)) {
+      return false;
+    }
+    final Struct that = (Struct) o;
+    if (!schema().equals(that.schema())) {
+      return false;
+    }
+    for (Field field : schema().fields()) {
+      if (!Objects.deepEquals(getWithoutDefault(field.name()), that.getWithoutDefault(field.name()))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    materialize();
+    return super.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    materialize();
+    return super.toString();
+  }
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.transform.xml;
+
+import com.sun.codemodel.CodeWriter;
+import com.sun.codemodel.JPackage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link CodeWriter} that keeps the source generated by xjc in memory instead of writing it to
+ * disk.
+ */
+class MemoryCodeWriter extends CodeWriter {
+  final Map<String, ByteArrayOutputStream> files = new LinkedHashMap<>();
+
+  MemoryCodeWriter() {
+    this.encoding = StandardCharsets.UTF_8.name();
+  }
+
+  @Override
+  public OutputStream openBinary(JPackage pkg, String fileName) {
+    final String path = pkg.isUnnamed() ? fileName : pkg.name().replace('.', '/') + '/' + fileName;
+    final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    this.files.put(path, outputStream);
+    return outputStream;
+  }
+
+  @Override
+  public void close() {
+
+  }
+
+  /**
+   * @return path of each generated java source file to its content.
+   */
+  public Map<String, String> sources() {
+    Map<String, String> result = new LinkedHashMap<>();
+    for (Map.Entry<String, ByteArrayOutputStream> file : this.files.entrySet()) {
+      if (file.getKey().endsWith(".java")) {
+        result.put(file.getKey(), new String(file.getValue().toByteArray(), StandardCharsets.UTF_8));
+      }
+    }
+    return result;
+  }
+}
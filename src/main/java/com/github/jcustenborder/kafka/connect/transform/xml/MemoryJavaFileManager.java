@@ -0,0 +1,85 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.transform.xml;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * {@link JavaFileManager} that reads sources from and writes class files to memory.
+ */
+class MemoryJavaFileManager extends ForwardingJavaFileManager<JavaFileManager> {
+  final Map<String, ClassOutput> classes = new LinkedHashMap<>();
+
+  MemoryJavaFileManager(JavaFileManager fileManager) {
+    super(fileManager);
+  }
+
+  static class SourceInput extends SimpleJavaFileObject {
+    final String content;
+
+    SourceInput(String path, String content) {
+      super(URI.create("string:///" + path), Kind.SOURCE);
+      this.content = content;
+    }
+
+    @Override
+    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+      return this.content;
+    }
+  }
+
+  static class ClassOutput extends SimpleJavaFileObject {
+    final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    ClassOutput(String className) {
+      super(URI.create("bytes:///" + className.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+    }
+
+    @Override
+    public OutputStream openOutputStream() {
+      return this.outputStream;
+    }
+  }
+
+  @Override
+  public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+    // The Eclipse compiler passes internal names such as a/b/C rather than binary names.
+    final String binaryName = className.replace('/', '.');
+    final ClassOutput result = new ClassOutput(binaryName);
+    this.classes.put(binaryName, result);
+    return result;
+  }
+
+  /**
+   * @return binary class name to the compiled bytecode.
+   */
+  public Map<String, byte[]> classes() {
+    Map<String, byte[]> result = new LinkedHashMap<>();
+    for (Map.Entry<String, ClassOutput> output : this.classes.entrySet()) {
+      result.put(output.getKey(), output.getValue().outputStream.toByteArray());
+    }
+    return result;
+  }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.transform.xml;
+
+import com.google.common.io.Files;
+import org.apache.kafka.common.utils.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+/**
+ * Generates and compiles the classes for the schemas ahead of time and writes them to a jar. The jar
+ * is added to the plugin path next to this plugin and the transformation is configured with
+ * {@code model.source=PRECOMPILED}, so xjc and the java compiler are not run by the worker.
+ *
+ * <pre>
+ * java -cp 'plugin/*' com.github.jcustenborder.kafka.connect.transform.xml.ModelJarGenerator model.properties model.jar
+ * </pre>
+ *
+ * The properties file takes the same {@code schema.path}, {@code package} and xjc settings as the
+ * transformation.
+ */
+public class ModelJarGenerator {
+  private static final Logger log = LoggerFactory.getLogger(ModelJarGenerator.class);
+
+  private ModelJarGenerator() {
+
+  }
+
+  public static void main(String... args) throws IOException {
+    if (args.length != 2) {
+      System.err.printf("Usage: %s <config.properties> <output.jar>%n", ModelJarGenerator.class.getName());
+      System.exit(1);
+    }
+    final Map<String, String> settings = Utils.propsToStringMap(Utils.loadProps(args[0]));
+    settings.put(XmlSchemaConfig.MODEL_SOURCE_CONFIG, XmlSchemaConfig.ModelSource.COMPILE.name());
+    generate(new XmlSchemaConfig(settings), new File(args[1]));
+  }
+
+  /**
+   * Method is used to compile the configured schemas and write the classes to a jar.
+   *
+   * @param config config with the schemas, package and xjc options.
+   * @param outputFile jar to write.
+   * @throws IOException thrown if a schema could not be read or the jar could not be written.
+   */
+  static void generate(XmlSchemaConfig config, File outputFile) throws IOException {
+    final Map<String, byte[]> classes;
+    final Set<String> packages;
+    try (XSDCompiler compiler = new XSDCompiler(config)) {
+      classes = compiler.generateAndCompile();
+      packages = compiler.packages();
+    }
+
+    final Manifest manifest = new Manifest();
+    manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    Files.createParentDirs(outputFile);
+    try (JarOutputStream outputStream = new JarOutputStream(new FileOutputStream(outputFile), manifest)) {
+      // Sorted so the same schema always produces the same jar layout.
+      for (Map.Entry<String, byte[]> cls : new TreeMap<>(classes).entrySet()) {
+        final String entryName = cls.getKey().replace('.', '/') + ".class";
+        log.trace("generate() - Writing {}", entryName);
+        outputStream.putNextEntry(new JarEntry(entryName));
+        outputStream.write(cls.getValue());
+        outputStream.closeEntry();
+      }
+    }
+    log.info("generate() - Wrote {} class(es) in {} to {}", classes.size(), packages, outputFile);
+  }
+}
@@ -0,0 +1,78 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.transform.xml;
+
+import javax.xml.bind.JAXBException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool for objects that are expensive to create and are not thread safe, such as
+ * {@link javax.xml.bind.Unmarshaller}. Callers never block. If the pool is empty a new instance is
+ * created, and instances released to a full pool are discarded.
+ *
+ * @param <T> type of the pooled object.
+ */
+class ObjectPool<T> {
+  interface Factory<T> {
+    T create() throws JAXBException;
+  }
+
+  final Factory<T> factory;
+  final int maximumIdle;
+  final Queue<T> idle = new ConcurrentLinkedQueue<>();
+  final AtomicInteger idleCount = new AtomicInteger();
+  volatile boolean closed;
+
+  ObjectPool(Factory<T> factory, int maximumIdle) {
+    this.factory = factory;
+    this.maximumIdle = maximumIdle;
+  }
+
+  /**
+   * Method is used to take an object from the pool. The object must be returned with
+   * {@link #release(Object)} once the caller is finished with it.
+   *
+   * @return pooled or newly created object.
+   * @throws JAXBException thrown if a new object could not be created.
+   */
+  public T borrow() throws JAXBException {
+    T result = this.idle.poll();
+    if (null != result) {
+      this.idleCount.decrementAndGet();
+      return result;
+    }
+    return this.factory.create();
+  }
+
+  public void release(T value) {
+    if (this.closed || null == value) {
+      return;
+    }
+    if (this.idleCount.incrementAndGet() > this.maximumIdle) {
+      this.idleCount.decrementAndGet();
+      return;
+    }
+    this.idle.offer(value);
+  }
+
+  public void close() {
+    this.closed = true;
+    this.idle.clear();
+    this.idleCount.set(0);
+  }
+}
@@ -0,0 +1,62 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.transform.xml;
+
+import com.google.common.base.Splitter;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tree of the element paths selected by {@link FromXmlConfig#PROJECTION_PATHS_CONFIG}. Each node
+ * is an element or attribute below the root element. A node that a path ends on selects the
+ * complete subtree.
+ */
+class Projection {
+  static final Splitter SPLITTER = Splitter.on('/').omitEmptyStrings().trimResults();
+
+  final Map<String, Projection> children = new LinkedHashMap<>();
+  boolean all;
+
+  /**
+   * @return true if the complete subtree of this node is selected.
+   */
+  boolean all() {
+    return this.all || this.children.isEmpty();
+  }
+
+  /**
+   * Method is used to parse paths such as {@code book/title} into a projection.
+   *
+   * @param paths paths relative to the root element.
+   * @return projection for the paths.
+   */
+  static Projection of(List<String> paths) {
+    final Projection result = new Projection();
+    if (paths.isEmpty()) {
+      result.all = true;
+    }
+    for (String path : paths) {
+      Projection node = result;
+      for (String segment : SPLITTER.split(path)) {
+        node = node.children.computeIfAbsent(segment, s -> new Projection());
+      }
+      node.all = true;
+    }
+    return result;
+  }
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.transform.xml;
+
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.DataException;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Converts xml directly to a {@link Struct} by reading StAX events and populating the struct
+ * using the {@link StructBinding} of the root element. No jaxb objects are created.
+ */
+class StaxStructReader {
+  final XMLInputFactory inputFactory;
+  final Map<QName, StructBinding> roots;
+  /**
+   * Root elements with a local name that no other root element uses. These are used for documents
+   * that are read without namespaces or do not use the namespace of the schema.
+   */
+  final Map<String, StructBinding> localRoots;
+
+  StaxStructReader(XMLInputFactory inputFactory, Map<QName, StructBinding> roots) {
+    this.inputFactory = inputFactory;
+    this.roots = roots;
+    this.localRoots = new HashMap<>();
+    final Set<String> ambiguous = new HashSet<>();
+    for (Map.Entry<QName, StructBinding> root : roots.entrySet()) {
+      if (null != this.localRoots.put(root.getKey().getLocalPart(), root.getValue())) {
+        ambiguous.add(root.getKey().getLocalPart());
+      }
+    }
+    this.localRoots.keySet().removeAll(ambiguous);
+  }
+
+  /**
+   * Method is used to look up the binding for the element the reader is positioned on by its
+   * qualified name, falling back to its local name.
+   *
+   * @param reader reader positioned on the root element.
+   * @return binding for the element or null if it is not a root element of the schemas.
+   */
+  StructBinding root(XMLStreamReader reader) {
+    final String namespace = reader.getNamespaceURI();
+    final StructBinding result = this.roots.get(
+        new QName(null == namespace ? XMLConstants.NULL_NS_URI : namespace, reader.getLocalName())
+    );
+    return null != result ? result : this.localRoots.get(reader.getLocalName());
+  }
+
+  Struct read(XMLStreamReader reader) throws XMLStreamException {
+    try {
+      reader.nextTag();
+      final StructBinding binding = root(reader);
+      if (null == binding) {
+        throw new DataException(
+            String.format("Root element '%s' is not defined in the schema.", reader.getName())
+        );
+      }
+      return readStruct(reader, binding);
+    } finally {
+      reader.close();
+    }
+  }
+
+  /**
+   * Reads the element the reader is positioned on. When this method returns the reader is
+   * positioned on the matching end element.
+   */
+  Struct readStruct(XMLStreamReader reader, StructBinding binding) throws XMLStreamException {
+    final Struct struct = new Struct(binding.schema);
+    Map<StructBinding.FieldBinding, List<Object>> lists = null;
+    StringBuilder text = null;
+
+    for (int i = 0; i < reader.getAttributeCount(); i++) {
+      final StructBinding.FieldBinding attribute = binding.attributes.get(reader.getAttributeLocalName(i));
+      if (null != attribute) {
+        struct.put(attribute.field, attribute.parse(reader.getAttributeValue(i)));
+      }
+    }
+
+    while (true) {
+      final int event = reader.next();
+      if (XMLStreamConstants.END_ELEMENT == event) {
+        break;
+      } else if (XMLStreamConstants.START_ELEMENT == event) {
+        final StructBinding.FieldBinding element = binding.elements.get(reader.getLocalName());
+        if (null == element) {
+          skipElement(reader);
+          continue;
+        }
+        final Object value = readValue(reader, element);
+        if (element.repeated) {
+          if (null == lists) {
+            lists = new HashMap<>();
+          }
+          lists.computeIfAbsent(element, e -> new ArrayList<>()).add(value);
+        } else {
+          struct.put(element.field, value);
+        }
+      } else if (null != binding.value &&
+          (XMLStreamConstants.CHARACTERS == event || XMLStreamConstants.CDATA == event)) {
+        if (null == text) {
+          text = new StringBuilder();
+        }
+        text.append(reader.getText());
+      }
+    }
+
+    if (null != lists) {
+      for (Map.Entry<StructBinding.FieldBinding, List<Object>> list : lists.entrySet()) {
+        struct.put(list.getKey().field, list.getValue());
+      }
+    }
+    if (null != text) {
+      struct.put(binding.value.field, binding.value.parse(text.toString()));
+    }
+
+    return struct;
+  }
+
+  Object readValue(XMLStreamReader reader, StructBinding.FieldBinding element) throws XMLStreamException {
+    if ("true".equals(reader.getAttributeValue(XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI, "nil"))) {
+      skipElement(reader);
+      return null;
+    }
+    if (null != element.child) {
+      return readStruct(reader, element.child);
+    }
+    return element.parse(reader.getElementText());
+  }
+
+  /**
+   * Skips the element the reader is positioned on including all of its children.
+   */
+  static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0) {
+      final int event = reader.next();
+      if (XMLStreamConstants.START_ELEMENT == event) {
+        depth++;
+      } else if (XMLStreamConstants.END_ELEMENT == event) {
+        depth--;
+      }
+    }
+  }
+}
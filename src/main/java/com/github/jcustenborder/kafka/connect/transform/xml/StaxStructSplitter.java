@@ -0,0 +1,211 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.transform.xml;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.DataException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams through a document and returns a {@link Struct} for every element at the configured
+ * path. Only the element currently being read is held in memory so documents with any number of
+ * repeating elements can be split.
+ */
+class StaxStructSplitter {
+  private static final Logger log = LoggerFactory.getLogger(StaxStructSplitter.class);
+  final StaxStructReader structReader;
+  final List<String> path;
+  /**
+   * Binding of each root element to the binding of the element at the path.
+   */
+  final Map<StructBinding, StructBinding> bindings;
+
+  StaxStructSplitter(StaxStructReader structReader, List<String> path, Map<StructBinding, StructBinding> bindings) {
+    this.structReader = structReader;
+    this.path = path;
+    this.bindings = bindings;
+  }
+
+  /**
+   * Method is used to resolve the binding of the element at the split path for every root element.
+   *
+   * @param structReader reader used to read each element.
+   * @param path path of the repeating element, relative to the root element.
+   * @return splitter for the path.
+   */
+  static StaxStructSplitter of(StaxStructReader structReader, String path) {
+    final List<String> segments = ImmutableList.copyOf(Projection.SPLITTER.split(path));
+    if (segments.isEmpty()) {
+      throw new ConfigException(FromXmlConfig.SPLIT_ELEMENT_PATH_CONFIG, path, "Path must contain at least one element.");
+    }
+    final Map<StructBinding, StructBinding> bindings = new HashMap<>();
+    for (StructBinding root : structReader.roots.values()) {
+      StructBinding binding = root;
+      for (String segment : segments) {
+        final StructBinding.FieldBinding element = binding.elements.get(segment);
+        binding = null != element ? element.child : null;
+        if (null == binding) {
+          break;
+        }
+      }
+      if (null != binding) {
+        bindings.put(root, binding);
+      }
+    }
+    if (bindings.isEmpty()) {
+      throw new ConfigException(
+          FromXmlConfig.SPLIT_ELEMENT_PATH_CONFIG,
+          path,
+          "Path does not match a complex element below any of the root elements."
+      );
+    }
+    return new StaxStructSplitter(structReader, segments, bindings);
+  }
+
+  public Iterator<Struct> split(Reader reader) throws XMLStreamException {
+    return split(this.structReader.inputFactory.createXMLStreamReader(reader), null);
+  }
+
+  public Iterator<Struct> split(InputStream inputStream, Charset charset) throws XMLStreamException {
+    return split(inputStream, charset, false);
+  }
+
+  /**
+   * @param closeStream true if the stream should be closed once the document has been read or
+   *                    could not be read.
+   */
+  Iterator<Struct> split(InputStream inputStream, Charset charset, boolean closeStream) throws XMLStreamException {
+    final XMLStreamReader streamReader;
+    try {
+      streamReader = null == charset ?
+          this.structReader.inputFactory.createXMLStreamReader(inputStream) :
+          this.structReader.inputFactory.createXMLStreamReader(inputStream, charset.name());
+    } catch (XMLStreamException | RuntimeException e) {
+      if (closeStream) {
+        close(inputStream);
+      }
+      throw e;
+    }
+    return split(streamReader, closeStream ? inputStream : null);
+  }
+
+  Iterator<Struct> split(XMLStreamReader reader, Closeable resource) throws XMLStreamException {
+    try {
+      reader.nextTag();
+    } catch (XMLStreamException | RuntimeException e) {
+      reader.close();
+      close(resource);
+      throw e;
+    }
+    final StructBinding root = this.structReader.root(reader);
+    final StructBinding binding = null != root ? this.bindings.get(root) : null;
+    if (null == binding) {
+      final QName rootName = reader.getName();
+      reader.close();
+      close(resource);
+      throw new DataException(
+          String.format("Root element '%s' does not have an element at '%s'.", rootName, String.join("/", this.path))
+      );
+    }
+    return new StructIterator(reader, binding, resource);
+  }
+
+  static void close(Closeable resource) {
+    if (null == resource) {
+      return;
+    }
+    try {
+      resource.close();
+    } catch (IOException e) {
+      log.warn("close() - Exception thrown while closing input", e);
+    }
+  }
+
+  class StructIterator extends AbstractIterator<Struct> {
+    final XMLStreamReader reader;
+    final StructBinding binding;
+    final Closeable resource;
+    int level;
+
+    StructIterator(XMLStreamReader reader, StructBinding binding, Closeable resource) {
+      this.reader = reader;
+      this.binding = binding;
+      this.resource = resource;
+    }
+
+    @Override
+    protected Struct computeNext() {
+      // The reader and resource are closed once the document ends or on any exception, so a
+      // caller that stops iterating after a failure does not leak them.
+      boolean close = true;
+      try {
+        while (this.reader.hasNext()) {
+          final int event = this.reader.next();
+          if (XMLStreamConstants.START_ELEMENT == event) {
+            if (!path.get(this.level).equals(this.reader.getLocalName())) {
+              StaxStructReader.skipElement(this.reader);
+            } else if (this.level == path.size() - 1) {
+              final Struct result = structReader.readStruct(this.reader, this.binding);
+              close = false;
+              return result;
+            } else {
+              this.level++;
+            }
+          } else if (XMLStreamConstants.END_ELEMENT == event) {
+            if (this.level == 0) {
+              break;
+            }
+            this.level--;
+          }
+        }
+        return endOfData();
+      } catch (XMLStreamException | IllegalArgumentException e) {
+        throw new DataException("Exception thrown while processing xml", e);
+      } finally {
+        if (close) {
+          close();
+        }
+      }
+    }
+
+    void close() {
+      try {
+        this.reader.close();
+      } catch (XMLStreamException e) {
+        log.warn("close() - Exception thrown while closing reader", e);
+      }
+      StaxStructSplitter.close(this.resource);
+    }
+  }
+}
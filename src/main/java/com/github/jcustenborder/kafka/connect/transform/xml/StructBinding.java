@@ -0,0 +1,864 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.transform.xml;
+
+import com.github.jcustenborder.kafka.connect.xml.Connectable;
+import com.google.common.primitives.Primitives;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.connect.data.ConnectSchema;
+import org.apache.kafka.connect.data.Date;
+import org.apache.kafka.connect.data.Decimal;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.data.Time;
+import org.apache.kafka.connect.data.Timestamp;
+import org.apache.kafka.connect.errors.DataException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.XMLConstants;
+import javax.xml.bind.DatatypeConverter;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementDecl;
+import javax.xml.bind.annotation.XmlElementRef;
+import javax.xml.bind.annotation.XmlElementRefs;
+import javax.xml.bind.annotation.XmlElements;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlSchema;
+import javax.xml.bind.annotation.XmlSchemaType;
+import javax.xml.bind.annotation.XmlTransient;
+import javax.xml.bind.annotation.XmlValue;
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeConstants;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.namespace.QName;
+import java.beans.Introspector;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Describes how the xml for a class generated by xjc maps to the fields of its
+ * {@code CONNECT_SCHEMA}. Bindings are built once with reflection over the jaxb annotations of the
+ * generated class so documents can be converted to a {@link org.apache.kafka.connect.data.Struct}
+ * without creating the intermediate jaxb objects.
+ */
+class StructBinding {
+  private static final Logger log = LoggerFactory.getLogger(StructBinding.class);
+  static final DatatypeFactory DATATYPE_FACTORY;
+
+  static {
+    try {
+      DATATYPE_FACTORY = DatatypeFactory.newInstance();
+    } catch (DatatypeConfigurationException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  static final String CONNECT_SCHEMA_FIELD = "CONNECT_SCHEMA";
+  static final String DEFAULT_NAME = "##default";
+
+  final Class<?> type;
+  final Schema schema;
+  final Map<String, FieldBinding> elements = new HashMap<>();
+  final Map<String, FieldBinding> attributes = new HashMap<>();
+  FieldBinding value;
+  List<FieldBinding> fieldBindings;
+  Constructor<?> constructor;
+  /**
+   * False if some fields of the schema are not bound, in which case {@link #toStruct(Object)} and
+   * {@link LazyStruct#of(StructBinding, Object)} fall back to the generated {@code toStruct()}
+   * method.
+   */
+  boolean complete = true;
+
+  StructBinding(Class<?> type, Schema schema) {
+    this.type = type;
+    this.schema = schema;
+  }
+
+  /**
+   * Binding for a single field of the struct.
+   */
+  static class FieldBinding {
+    final java.lang.reflect.Field javaField;
+    final Field field;
+    final boolean repeated;
+    final StructBinding child;
+    final Function<String, Object> parser;
+    final Function<Object, Object> converter;
+    final Function<Object, Object> javaConverter;
+
+    FieldBinding(java.lang.reflect.Field javaField, Field field, boolean repeated, StructBinding child) {
+      this.javaField = javaField;
+      this.field = field;
+      this.repeated = repeated;
+      this.child = child;
+      final Schema valueSchema = repeated ? field.schema().valueSchema() : field.schema();
+      final Class<?> valueType = repeated ? listType(javaField) : javaField.getType();
+      this.parser = null == child ? parser(valueSchema) : null;
+      this.converter = null == child ? converter(field.schema(), valueType) : null;
+      final XmlSchemaType schemaType = javaField.getAnnotation(XmlSchemaType.class);
+      this.javaConverter = null == child ? javaConverter(
+          valueType,
+          valueSchema,
+          null != schemaType ? schemaType.name() : null
+      ) : null;
+    }
+
+    Object parse(String text) {
+      return this.parser.apply(text);
+    }
+
+    /**
+     * Converts the value of the field of the jaxb object to the value for the struct.
+     */
+    Object convert(Object value) {
+      return null == value ? null : this.converter.apply(value);
+    }
+
+    /**
+     * Converts the value of the struct field to the value for the field of the jaxb object.
+     */
+    Object toJava(Object value) {
+      if (null == value) {
+        return null;
+      }
+      if (!this.repeated) {
+        return toJavaValue(value);
+      }
+      final List<?> input = (List<?>) value;
+      final List<Object> result = new ArrayList<>(input.size());
+      for (Object item : input) {
+        result.add(null == item ? null : toJavaValue(item));
+      }
+      return result;
+    }
+
+    /**
+     * Converts the value of the field of the jaxb object to the value for the struct, including
+     * nested jaxb objects.
+     */
+    Object toStruct(Object value) {
+      if (null == value || null == this.child) {
+        return convert(value);
+      }
+      if (!this.repeated) {
+        return this.child.toStruct(value);
+      }
+      final List<?> input = (List<?>) value;
+      final List<Object> result = new ArrayList<>(input.size());
+      for (Object item : input) {
+        result.add(null == item ? null : this.child.toStruct(item));
+      }
+      return result;
+    }
+
+    private Object toJavaValue(Object value) {
+      return null == this.child ? this.javaConverter.apply(value) : this.child.toJava((Struct) value);
+    }
+  }
+
+  /**
+   * Method is used to convert a jaxb object to a struct. Values are put by the {@link Field} that
+   * was resolved when the binding was built, rather than looking up each field by name like the
+   * generated {@code toStruct()} method does.
+   *
+   * @param source jaxb object of the type of this binding.
+   * @return struct with the schema of this binding.
+   */
+  Struct toStruct(Object source) {
+    if (!this.complete) {
+      return ((Connectable) source).toStruct();
+    }
+    final Struct result = new Struct(this.schema);
+    for (FieldBinding fieldBinding : fieldBindings()) {
+      final Object value;
+      try {
+        value = fieldBinding.javaField.get(source);
+      } catch (IllegalAccessException e) {
+        throw new DataException("Exception thrown while reading " + fieldBinding.javaField, e);
+      }
+      if (null != value) {
+        result.put(fieldBinding.field, fieldBinding.toStruct(value));
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Method is used to create the jaxb object for a struct. This is the reverse of the generated
+   * {@code toStruct()} method.
+   *
+   * @param struct struct to convert. Fields are matched by name when the struct has a different
+   *               schema instance.
+   * @return jaxb object with the values of the struct.
+   * @throws DataException if the binding is not complete, as the fields that are not bound would be
+   *                       missing from the xml.
+   */
+  Object toJava(Struct struct) {
+    if (!this.complete) {
+      throw new DataException(
+          String.format(
+              "%s can not be written as xml because it has choice or element reference fields, which are not supported.",
+              this.type.getName()
+          )
+      );
+    }
+    final Object result;
+    try {
+      result = constructor().newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new DataException("Exception thrown while creating " + this.type.getName(), e);
+    }
+    final boolean sameSchema = this.schema == struct.schema();
+    for (FieldBinding fieldBinding : fieldBindings()) {
+      final Object value;
+      if (sameSchema) {
+        value = struct.get(fieldBinding.field);
+      } else {
+        // Structs with a projected schema only have some of the fields.
+        final Field field = struct.schema().field(fieldBinding.field.name());
+        value = null == field ? null : struct.get(field);
+      }
+      if (null == value) {
+        continue;
+      }
+      try {
+        fieldBinding.javaField.set(result, fieldBinding.toJava(value));
+      } catch (IllegalAccessException e) {
+        throw new DataException("Exception thrown while writing " + fieldBinding.javaField, e);
+      }
+    }
+    return result;
+  }
+
+  Constructor<?> constructor() throws NoSuchMethodException {
+    if (null == this.constructor) {
+      final Constructor<?> constructor = this.type.getDeclaredConstructor();
+      constructor.setAccessible(true);
+      this.constructor = constructor;
+    }
+    return this.constructor;
+  }
+
+  /**
+   * @return bindings for every field in the schema that is bound to xml.
+   */
+  List<FieldBinding> fieldBindings() {
+    if (null == this.fieldBindings) {
+      final List<FieldBinding> result = new ArrayList<>(this.elements.size() + this.attributes.size() + 1);
+      result.addAll(this.elements.values());
+      result.addAll(this.attributes.values());
+      if (null != this.value) {
+        result.add(this.value);
+      }
+      this.fieldBindings = result;
+    }
+    return this.fieldBindings;
+  }
+
+  static boolean isConnectable(Class<?> cls) {
+    return null != connectSchema(cls);
+  }
+
+  static Schema connectSchema(Class<?> cls) {
+    try {
+      java.lang.reflect.Field schemaField = cls.getField(CONNECT_SCHEMA_FIELD);
+      if (!Modifier.isStatic(schemaField.getModifiers())) {
+        return null;
+      }
+      return (Schema) schemaField.get(null);
+    } catch (NoSuchFieldException | IllegalAccessException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Method is used to build the binding for a class generated by xjc. Bindings that are
+   * referenced more than once, or recursively, are only built once.
+   *
+   * @param type generated class.
+   * @param bindings bindings that have already been built.
+   * @return binding for the class.
+   */
+  static StructBinding of(Class<?> type, Map<Class<?>, StructBinding> bindings) {
+    StructBinding result = bindings.get(type);
+    if (null != result) {
+      return result;
+    }
+    final Schema schema = connectSchema(type);
+    if (null == schema) {
+      throw new IllegalStateException(
+          String.format("%s does not have a static %s field.", type.getName(), CONNECT_SCHEMA_FIELD)
+      );
+    }
+    result = new StructBinding(type, schema);
+    bindings.put(type, result);
+
+    for (java.lang.reflect.Field javaField : fields(type)) {
+      final Field field = schema.field(javaField.getName());
+      if (null == field) {
+        log.trace("of() - {}.{} is not part of the schema. Skipping.", type.getSimpleName(), javaField.getName());
+        continue;
+      }
+      if (javaField.isAnnotationPresent(XmlElements.class) ||
+          javaField.isAnnotationPresent(XmlElementRef.class) ||
+          javaField.isAnnotationPresent(XmlElementRefs.class)) {
+        log.warn("of() - {}.{} is a choice or element reference which is not supported. It will always be null " +
+            "unless the xml is unmarshalled with jaxb, and {} can not be written as xml.",
+            type.getSimpleName(), javaField.getName(), type.getSimpleName());
+        result.complete = false;
+        continue;
+      }
+
+      final boolean repeated = List.class.isAssignableFrom(javaField.getType());
+      final Class<?> valueType = repeated ? listType(javaField) : javaField.getType();
+      final StructBinding child = null != valueType && isConnectable(valueType) ? of(valueType, bindings) : null;
+      final FieldBinding fieldBinding = new FieldBinding(javaField, field, repeated, child);
+
+      XmlAttribute xmlAttribute = javaField.getAnnotation(XmlAttribute.class);
+      XmlElement xmlElement = javaField.getAnnotation(XmlElement.class);
+      if (null != xmlAttribute) {
+        result.attributes.put(name(xmlAttribute.name(), javaField), fieldBinding);
+      } else if (javaField.isAnnotationPresent(XmlValue.class)) {
+        result.value = fieldBinding;
+      } else if (null != xmlElement) {
+        result.elements.put(name(xmlElement.name(), javaField), fieldBinding);
+      } else {
+        result.elements.put(javaField.getName(), fieldBinding);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Method is used to build a binding that only contains the fields selected by the projection.
+   * The schema of the result only has the selected fields, in the order of the original schema.
+   * Elements that are not selected are not in the binding so they are skipped while reading.
+   *
+   * @param projection fields to keep.
+   * @param path path of this binding, used for error messages.
+   * @return binding for the selected fields.
+   */
+  StructBinding project(Projection projection, String path) {
+    if (projection.all()) {
+      return this;
+    }
+
+    final Map<String, FieldBinding> selected = new LinkedHashMap<>();
+    for (Map.Entry<String, Projection> kvp : projection.children.entrySet()) {
+      final FieldBinding fieldBinding = field(kvp.getKey());
+      if (null == fieldBinding) {
+        throw new ConfigException(
+            FromXmlConfig.PROJECTION_PATHS_CONFIG,
+            path + "/" + kvp.getKey(),
+            String.format("%s does not have an element or attribute named '%s'.", this.type.getName(), kvp.getKey())
+        );
+      }
+      selected.put(fieldBinding.field.name(), fieldBinding);
+    }
+
+    final SchemaBuilder builder = SchemaBuilder.struct()
+        .name(this.schema.name())
+        .version(this.schema.version())
+        .doc(this.schema.doc());
+    if (this.schema.isOptional()) {
+      builder.optional();
+    }
+    final Map<String, StructBinding> children = new HashMap<>();
+    for (Field field : this.schema.fields()) {
+      final boolean isValue = null != this.value && this.value.field.equals(field);
+      final FieldBinding fieldBinding = isValue ? this.value : selected.get(field.name());
+      if (null == fieldBinding) {
+        continue;
+      }
+      Schema fieldSchema = field.schema();
+      if (null != fieldBinding.child) {
+        final String xmlName = xmlName(fieldBinding);
+        final StructBinding child = fieldBinding.child.project(projection.children.get(xmlName), path + "/" + xmlName);
+        children.put(field.name(), child);
+        if (child != fieldBinding.child) {
+          fieldSchema = fieldBinding.repeated ? arraySchema(field.schema(), child.schema) : child.schema;
+        }
+      }
+      builder.field(field.name(), fieldSchema);
+    }
+
+    final StructBinding result = new StructBinding(this.type, builder.build());
+    for (Field field : result.schema.fields()) {
+      final FieldBinding original = null != this.value && this.value.field.name().equals(field.name()) ?
+          this.value : selected.get(field.name());
+      final FieldBinding fieldBinding = new FieldBinding(
+          original.javaField,
+          field,
+          original.repeated,
+          children.get(field.name())
+      );
+      if (original == this.value) {
+        result.value = fieldBinding;
+      } else if (this.attributes.containsValue(original)) {
+        result.attributes.put(xmlName(original), fieldBinding);
+      } else {
+        result.elements.put(xmlName(original), fieldBinding);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @param segment name of an element, or of an attribute prefixed with {@code @}.
+   * @return binding for the element or attribute, or null if there is none.
+   */
+  FieldBinding field(String segment) {
+    if (segment.startsWith("@")) {
+      return this.attributes.get(segment.substring(1));
+    }
+    final FieldBinding result = this.elements.get(segment);
+    return null != result ? result : this.attributes.get(segment);
+  }
+
+  /**
+   * Method is used to check if a projection path names an element or attribute below this
+   * binding.
+   *
+   * @param segments segments of the path, relative to the element of this binding.
+   * @return true if every segment of the path exists.
+   */
+  boolean resolves(Iterable<String> segments) {
+    StructBinding binding = this;
+    for (String segment : segments) {
+      // The previous segment was an element without children.
+      if (null == binding) {
+        return false;
+      }
+      final FieldBinding fieldBinding = binding.field(segment);
+      if (null == fieldBinding) {
+        return false;
+      }
+      binding = fieldBinding.child;
+    }
+    return true;
+  }
+
+  String xmlName(FieldBinding fieldBinding) {
+    for (Map.Entry<String, FieldBinding> kvp : this.elements.entrySet()) {
+      if (kvp.getValue() == fieldBinding) {
+        return kvp.getKey();
+      }
+    }
+    for (Map.Entry<String, FieldBinding> kvp : this.attributes.entrySet()) {
+      if (kvp.getValue() == fieldBinding) {
+        return kvp.getKey();
+      }
+    }
+    return null;
+  }
+
+  static Schema arraySchema(Schema original, Schema valueSchema) {
+    final SchemaBuilder builder = SchemaBuilder.array(valueSchema)
+        .name(original.name())
+        .version(original.version())
+        .doc(original.doc());
+    if (original.isOptional()) {
+      builder.optional();
+    }
+    return builder.build();
+  }
+
+  /**
+   * Method is used to find the root elements declared by the ObjectFactory of each package and
+   * build the bindings for their types.
+   *
+   * @param classLoader class loader the generated classes were loaded with.
+   * @param packages packages generated by xjc.
+   * @return qualified name of the root element to binding.
+   */
+  static Map<QName, StructBinding> rootElements(ClassLoader classLoader, Collection<String> packages) {
+    final Map<Class<?>, StructBinding> bindings = new HashMap<>();
+    final Map<QName, StructBinding> result = new LinkedHashMap<>();
+
+    for (String packageName : packages) {
+      final String objectFactoryClass = String.format("%s.ObjectFactory", packageName);
+      final Class<?> objectFactory;
+      try {
+        objectFactory = classLoader.loadClass(objectFactoryClass);
+      } catch (ClassNotFoundException e) {
+        throw new IllegalStateException("Exception thrown while loading " + objectFactoryClass, e);
+      }
+
+      for (Method method : objectFactory.getMethods()) {
+        final XmlElementDecl elementDecl = method.getAnnotation(XmlElementDecl.class);
+        final Class<?> type;
+        final QName name;
+        if (null != elementDecl && JAXBElement.class.equals(method.getReturnType())) {
+          type = elementType(method);
+          name = new QName(namespace(elementDecl.namespace(), objectFactory), elementDecl.name());
+        } else if (method.getParameterCount() == 0 && method.getReturnType().isAnnotationPresent(XmlRootElement.class)) {
+          type = method.getReturnType();
+          final XmlRootElement rootElement = type.getAnnotation(XmlRootElement.class);
+          name = new QName(
+              namespace(rootElement.namespace(), type),
+              DEFAULT_NAME.equals(rootElement.name()) ? Introspector.decapitalize(type.getSimpleName()) : rootElement.name()
+          );
+        } else {
+          continue;
+        }
+
+        if (null == type || !isConnectable(type)) {
+          log.trace("rootElements() - Skipping {}", method);
+          continue;
+        }
+        log.trace("rootElements() - Binding root element '{}' to {}", name, type.getName());
+        result.put(name, of(type, bindings));
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Resolves the namespace of an annotation to the namespace of the package when it is not set.
+   */
+  static String namespace(String annotationNamespace, Class<?> type) {
+    if (!DEFAULT_NAME.equals(annotationNamespace)) {
+      return annotationNamespace;
+    }
+    final Package typePackage = type.getPackage();
+    final XmlSchema xmlSchema = null != typePackage ? typePackage.getAnnotation(XmlSchema.class) : null;
+    return null != xmlSchema ? xmlSchema.namespace() : XMLConstants.NULL_NS_URI;
+  }
+
+  static Class<?> elementType(Method method) {
+    Type returnType = method.getGenericReturnType();
+    if (returnType instanceof ParameterizedType) {
+      Type argument = ((ParameterizedType) returnType).getActualTypeArguments()[0];
+      if (argument instanceof Class) {
+        return (Class<?>) argument;
+      }
+    }
+    return null;
+  }
+
+  static String name(String annotationName, java.lang.reflect.Field javaField) {
+    return DEFAULT_NAME.equals(annotationName) ? javaField.getName() : annotationName;
+  }
+
+  static List<java.lang.reflect.Field> fields(Class<?> type) {
+    if (null == type || Object.class.equals(type)) {
+      return Collections.emptyList();
+    }
+    List<java.lang.reflect.Field> result = new ArrayList<>(fields(type.getSuperclass()));
+    for (java.lang.reflect.Field field : type.getDeclaredFields()) {
+      if (Modifier.isStatic(field.getModifiers()) || field.isAnnotationPresent(XmlTransient.class)) {
+        continue;
+      }
+      field.setAccessible(true);
+      result.add(field);
+    }
+    return result;
+  }
+
+  static Class<?> listType(java.lang.reflect.Field javaField) {
+    Type genericType = javaField.getGenericType();
+    if (genericType instanceof ParameterizedType) {
+      Type[] arguments = ((ParameterizedType) genericType).getActualTypeArguments();
+      if (arguments.length == 1 && arguments[0] instanceof Class) {
+        return (Class<?>) arguments[0];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Method is used to select the conversion from xml text to the connect value for a schema. The
+   * conversion is resolved once per field rather than once per value.
+   */
+  static Function<String, Object> parser(Schema schema) {
+    if (null != schema.name()) {
+      switch (schema.name()) {
+        case Date.LOGICAL_NAME:
+        case Time.LOGICAL_NAME:
+        case Timestamp.LOGICAL_NAME:
+          return s -> DatatypeConverter.parseDateTime(s.trim()).getTime();
+        case Decimal.LOGICAL_NAME:
+          final int scale = Integer.parseInt(schema.parameters().get(Decimal.SCALE_FIELD));
+          return s -> new BigDecimal(s.trim()).setScale(scale, RoundingMode.HALF_UP);
+        default:
+          break;
+      }
+    }
+
+    switch (schema.type()) {
+      case INT8:
+        return s -> Byte.parseByte(s.trim());
+      case INT16:
+        return s -> Short.parseShort(s.trim());
+      case INT32:
+        return s -> Integer.parseInt(s.trim());
+      case INT64:
+        return s -> Long.parseLong(s.trim());
+      case FLOAT32:
+        return s -> Float.parseFloat(s.trim());
+      case FLOAT64:
+        return s -> Double.parseDouble(s.trim());
+      case BOOLEAN:
+        return s -> DatatypeConverter.parseBoolean(s.trim());
+      case BYTES:
+        return s -> DatatypeConverter.parseBase64Binary(s.trim());
+      case STRING:
+        return s -> s;
+      default:
+        return s -> {
+          throw new DataException(
+              String.format("%s is not supported for xml text.", schema.type())
+          );
+        };
+    }
+  }
+
+  /**
+   * Method is used to select the conversion from the value of a field of a jaxb object to the
+   * connect value for a schema. This mirrors the conversion made by the generated
+   * {@code toStruct()} method.
+   *
+   * @param schema schema of the value.
+   * @param javaType type of the field, or of the items for a list. Used to resolve the xml values
+   *                 of enums once rather than for every value. May be null.
+   */
+  static Function<Object, Object> converter(Schema schema, Class<?> javaType) {
+    if (null != schema.name()) {
+      switch (schema.name()) {
+        case Date.LOGICAL_NAME:
+        case Time.LOGICAL_NAME:
+        case Timestamp.LOGICAL_NAME:
+          return o -> {
+            if (o instanceof XMLGregorianCalendar) {
+              return ((XMLGregorianCalendar) o).toGregorianCalendar().getTime();
+            } else if (o instanceof Calendar) {
+              return ((Calendar) o).getTime();
+            }
+            return o;
+          };
+        case Decimal.LOGICAL_NAME:
+          final int scale = Integer.parseInt(schema.parameters().get(Decimal.SCALE_FIELD));
+          return o -> {
+            final BigDecimal decimal = o instanceof BigInteger ? new BigDecimal((BigInteger) o) : (BigDecimal) o;
+            return decimal.setScale(scale, RoundingMode.HALF_UP);
+          };
+        default:
+          break;
+      }
+    }
+
+    if (null != javaType && schema.type().isPrimitive() && Schema.Type.BYTES != schema.type() &&
+        schema.type() == ConnectSchema.schemaType(Primitives.wrap(javaType))) {
+      // Values that already have the type of the schema are used as is rather than being unboxed
+      // and boxed again.
+      return o -> o;
+    }
+
+    switch (schema.type()) {
+      case INT8:
+        return o -> ((Number) o).byteValue();
+      case INT16:
+        return o -> ((Number) o).shortValue();
+      case INT32:
+        return o -> ((Number) o).intValue();
+      case INT64:
+        return o -> ((Number) o).longValue();
+      case FLOAT32:
+        return o -> ((Number) o).floatValue();
+      case FLOAT64:
+        return o -> ((Number) o).doubleValue();
+      case STRING:
+        if (null != javaType && javaType.isEnum()) {
+          final String[] values = enumValues(javaType);
+          return o -> values[((Enum<?>) o).ordinal()];
+        }
+        return o -> o instanceof Enum ? enumValue((Enum<?>) o) : o.toString();
+      case ARRAY:
+        final Function<Object, Object> valueConverter = converter(schema.valueSchema(), javaType);
+        return o -> {
+          final List<?> input = (List<?>) o;
+          final List<Object> result = new ArrayList<>(input.size());
+          for (Object item : input) {
+            result.add(null == item ? null : valueConverter.apply(item));
+          }
+          return result;
+        };
+      default:
+        return o -> o;
+    }
+  }
+
+  /**
+   * Method is used to select the conversion from a connect value to the type of a field of a jaxb
+   * object. This is the reverse of {@link #converter(Schema, Class)}.
+   *
+   * @param javaType type of the field, or of the items for a list.
+   * @param schema schema of the value.
+   * @param xmlSchemaType name of the xml schema type of the field, if declared.
+   */
+  static Function<Object, Object> javaConverter(Class<?> javaType, Schema schema, String xmlSchemaType) {
+    if (null == javaType) {
+      return o -> {
+        throw new DataException("Fields with a generic type are not supported.");
+      };
+    }
+    if (XMLGregorianCalendar.class.equals(javaType)) {
+      final String calendarType;
+      if ("date".equals(xmlSchemaType) || Date.LOGICAL_NAME.equals(schema.name())) {
+        calendarType = Date.LOGICAL_NAME;
+      } else if ("time".equals(xmlSchemaType) || Time.LOGICAL_NAME.equals(schema.name())) {
+        calendarType = Time.LOGICAL_NAME;
+      } else {
+        calendarType = Timestamp.LOGICAL_NAME;
+      }
+      return o -> calendar((java.util.Date) o, calendarType);
+    } else if (Calendar.class.isAssignableFrom(javaType)) {
+      return o -> {
+        final GregorianCalendar calendar = new GregorianCalendar();
+        calendar.setTime((java.util.Date) o);
+        return calendar;
+      };
+    } else if (BigInteger.class.equals(javaType)) {
+      return o -> o instanceof BigDecimal ? ((BigDecimal) o).toBigInteger() : BigInteger.valueOf(((Number) o).longValue());
+    } else if (BigDecimal.class.equals(javaType)) {
+      return o -> o instanceof BigDecimal ? o : new BigDecimal(o.toString());
+    } else if (javaType.isEnum()) {
+      return enumConverter(javaType);
+    } else if (Byte.class.equals(javaType) || byte.class.equals(javaType)) {
+      return o -> ((Number) o).byteValue();
+    } else if (Short.class.equals(javaType) || short.class.equals(javaType)) {
+      return o -> ((Number) o).shortValue();
+    } else if (Integer.class.equals(javaType) || int.class.equals(javaType)) {
+      return o -> ((Number) o).intValue();
+    } else if (Long.class.equals(javaType) || long.class.equals(javaType)) {
+      return o -> ((Number) o).longValue();
+    } else if (Float.class.equals(javaType) || float.class.equals(javaType)) {
+      return o -> ((Number) o).floatValue();
+    } else if (Double.class.equals(javaType) || double.class.equals(javaType)) {
+      return o -> ((Number) o).doubleValue();
+    } else if (String.class.equals(javaType)) {
+      return Object::toString;
+    } else if (JAXBElement.class.isAssignableFrom(javaType)) {
+      return o -> {
+        throw new DataException("Nillable or substitutable elements are not supported.");
+      };
+    }
+    return o -> o;
+  }
+
+  /**
+   * Dates are written without a time or timezone and times without a date. The default timezone
+   * is used because that is the timezone xml dates without one are read in.
+   */
+  static XMLGregorianCalendar calendar(java.util.Date date, String logicalName) {
+    final GregorianCalendar calendar = new GregorianCalendar();
+    calendar.setTime(date);
+    final XMLGregorianCalendar result = DATATYPE_FACTORY.newXMLGregorianCalendar(calendar);
+    switch (logicalName) {
+      case Date.LOGICAL_NAME:
+        result.setTime(DatatypeConstants.FIELD_UNDEFINED, DatatypeConstants.FIELD_UNDEFINED, DatatypeConstants.FIELD_UNDEFINED);
+        result.setTimezone(DatatypeConstants.FIELD_UNDEFINED);
+        break;
+      case Time.LOGICAL_NAME:
+        result.setYear(DatatypeConstants.FIELD_UNDEFINED);
+        result.setMonth(DatatypeConstants.FIELD_UNDEFINED);
+        result.setDay(DatatypeConstants.FIELD_UNDEFINED);
+        break;
+      default:
+        break;
+    }
+    return result;
+  }
+
+  /**
+   * Enums generated by xjc are created from the xml value with a static {@code fromValue()}
+   * method.
+   */
+  static Function<Object, Object> enumConverter(Class<?> enumType) {
+    final Method fromValue;
+    try {
+      fromValue = enumType.getMethod("fromValue", String.class);
+    } catch (NoSuchMethodException e) {
+      return o -> enumValueOf(enumType, o.toString());
+    }
+    return o -> {
+      try {
+        return fromValue.invoke(null, o.toString());
+      } catch (ReflectiveOperationException e) {
+        throw new DataException(
+            String.format("'%s' is not a valid value for %s", o, enumType.getName()),
+            e
+        );
+      }
+    };
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  static Object enumValueOf(Class<?> enumType, String name) {
+    return Enum.valueOf((Class<? extends Enum>) enumType, name);
+  }
+
+  /**
+   * Method is used to look up the xml value of every constant of an enum up front, indexed by
+   * ordinal, so converting a value does not go through reflection.
+   */
+  static String[] enumValues(Class<?> enumType) {
+    final Object[] constants = enumType.getEnumConstants();
+    final String[] result = new String[constants.length];
+    for (Object constant : constants) {
+      final Enum<?> value = (Enum<?>) constant;
+      result[value.ordinal()] = enumValue(value);
+    }
+    return result;
+  }
+
+  /**
+   * Enums generated by xjc expose the xml value through a {@code value()} method.
+   */
+  static String enumValue(Enum<?> value) {
+    try {
+      Method method = value.getClass().getMethod("value");
+      return String.valueOf(method.invoke(value));
+    } catch (ReflectiveOperationException e) {
+      return value.name();
+    }
+  }
+}
@@ -0,0 +1,265 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.transform.xml;
+
+import com.github.jcustenborder.kafka.connect.utils.config.Description;
+import com.github.jcustenborder.kafka.connect.utils.config.Title;
+import com.github.jcustenborder.kafka.connect.utils.transformation.BaseKeyValueTransformation;
+import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.connect.connector.ConnectRecord;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaAndValue;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.DataException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
+import java.util.Map;
+
+@Title("ToXML")
+@Description("This transformation is used to convert a struct to XML based on the provided XSD. The struct " +
+    "must have the schema of a root element of the XSD, such as the structs created by the FromXML " +
+    "transformation with the same schema.")
+public abstract class ToXml<R extends ConnectRecord<R>> extends BaseKeyValueTransformation<R> {
+  private static final Logger log = LoggerFactory.getLogger(ToXml.class);
+  /**
+   * Buffers that grew larger than this while writing a record are not returned to the pool.
+   */
+  static final int MAXIMUM_RETAINED_BUFFER_SIZE = 1024 * 1024;
+  ToXmlConfig config;
+  JAXBContextRegistry.Registration registration;
+  JAXBContext context;
+  Map<String, Root> roots;
+  ObjectPool<Output> outputs;
+
+  protected ToXml(boolean isKey) {
+    super(isKey);
+  }
+
+  /**
+   * Root element that structs with the schema of the binding are written as.
+   */
+  static class Root {
+    final QName name;
+    final StructBinding binding;
+
+    Root(QName name, StructBinding binding) {
+      this.name = name;
+      this.binding = binding;
+    }
+
+    @SuppressWarnings("unchecked")
+    JAXBElement<Object> element(Object value) {
+      return new JAXBElement<>(this.name, (Class<Object>) this.binding.type, value);
+    }
+  }
+
+  /**
+   * Marshaller along with the buffer it writes to. Neither is thread safe so they are pooled
+   * together.
+   */
+  static class Output {
+    final Marshaller marshaller;
+    final ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+
+    Output(Marshaller marshaller) {
+      this.marshaller = marshaller;
+    }
+  }
+
+  @Override
+  public ConfigDef config() {
+    return ToXmlConfig.config();
+  }
+
+  @Override
+  public void configure(Map<String, ?> settings) {
+    this.config = new ToXmlConfig(settings);
+
+    try {
+      this.registration = JAXBContextRegistry.acquire(this.config);
+      this.context = this.registration.context();
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+
+    this.roots = new HashMap<>();
+    for (Map.Entry<QName, StructBinding> root : StructBinding.rootElements(this.registration.classLoader(), this.registration.packages()).entrySet()) {
+      final String schemaName = root.getValue().schema.name();
+      final Root existing = this.roots.putIfAbsent(schemaName, new Root(root.getKey(), root.getValue()));
+      if (null != existing) {
+        log.warn(
+            "configure() - Root elements {} and {} have the same schema '{}'. Structs will be written as {}.",
+            existing.name, root.getKey(), schemaName, existing.name
+        );
+      } else {
+        log.trace("configure() - Writing structs with schema '{}' as {}", schemaName, root.getKey());
+      }
+    }
+
+    this.outputs = new ObjectPool<>(this::output, this.config.marshallerPoolSize);
+    try {
+      // Create the first marshaller up front so configuration problems are raised here.
+      this.outputs.release(this.outputs.borrow());
+    } catch (JAXBException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  Output output() throws JAXBException {
+    final Marshaller marshaller = this.context.createMarshaller();
+    marshaller.setProperty(Marshaller.JAXB_ENCODING, this.config.outputCharset.name());
+    marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, this.config.outputFormattedEnabled);
+    return new Output(marshaller);
+  }
+
+  @Override
+  public void close() {
+    if (null != this.outputs) {
+      this.outputs.close();
+    }
+    if (null == this.registration) {
+      return;
+    }
+    try {
+      this.registration.close();
+    } catch (IOException e) {
+      log.error("Exception thrown", e);
+    }
+  }
+
+  /**
+   * Tombstones are passed through so deletes still reach the sink. A schema on the tombstone is
+   * replaced with the optional schema of the output.
+   */
+  @Override
+  protected SchemaAndValue process(R record, SchemaAndValue input) {
+    if (null != input.value()) {
+      return super.process(record, input);
+    }
+    if (null == input.schema()) {
+      return input;
+    }
+    return new SchemaAndValue(
+        ToXmlConfig.OutputType.STRING == this.config.outputType ? Schema.OPTIONAL_STRING_SCHEMA : Schema.OPTIONAL_BYTES_SCHEMA,
+        null
+    );
+  }
+
+  /**
+   * Converts the struct to the classes generated by xjc and marshals them straight into a pooled
+   * buffer. The only copy made per record is the one handed to the record.
+   */
+  @Override
+  protected SchemaAndValue processStruct(R record, Schema inputSchema, Struct input) {
+    final Root root = this.roots.get(input.schema().name());
+    if (null == root) {
+      throw new DataException(
+          String.format("Schema '%s' is not the schema of a root element.", input.schema().name())
+      );
+    }
+    final Object value = root.binding.toJava(input);
+    final boolean optional = input.schema().isOptional();
+
+    Output output = null;
+    try {
+      output = this.outputs.borrow();
+      output.buffer.reset();
+      output.marshaller.marshal(root.element(value), output.buffer);
+      if (ToXmlConfig.OutputType.STRING == this.config.outputType) {
+        return new SchemaAndValue(
+            optional ? Schema.OPTIONAL_STRING_SCHEMA : Schema.STRING_SCHEMA,
+            output.buffer.toString(this.config.outputCharset.name())
+        );
+      } else {
+        return new SchemaAndValue(
+            optional ? Schema.OPTIONAL_BYTES_SCHEMA : Schema.BYTES_SCHEMA,
+            output.buffer.toByteArray()
+        );
+      }
+    } catch (JAXBException | UnsupportedEncodingException e) {
+      throw new DataException("Exception thrown while writing xml", e);
+    } finally {
+      if (null != output && output.buffer.size() <= MAXIMUM_RETAINED_BUFFER_SIZE) {
+        this.outputs.release(output);
+      }
+    }
+  }
+
+  /**
+   * Creates a copy of the record with the key or value replaced.
+   */
+  protected abstract R newRecord(R record, SchemaAndValue transformed);
+
+  public static class Key<R extends ConnectRecord<R>> extends ToXml<R> {
+    public Key() {
+      super(true);
+    }
+
+    @Override
+    public R apply(R r) {
+      final SchemaAndValue transformed = process(r, new SchemaAndValue(r.keySchema(), r.key()));
+      return newRecord(r, transformed);
+    }
+
+    @Override
+    protected R newRecord(R r, SchemaAndValue transformed) {
+      return r.newRecord(
+          r.topic(),
+          r.kafkaPartition(),
+          transformed.schema(),
+          transformed.value(),
+          r.valueSchema(),
+          r.value(),
+          r.timestamp()
+      );
+    }
+  }
+
+  public static class Value<R extends ConnectRecord<R>> extends ToXml<R> {
+    public Value() {
+      super(false);
+    }
+
+    @Override
+    public R apply(R r) {
+      final SchemaAndValue transformed = process(r, new SchemaAndValue(r.valueSchema(), r.value()));
+      return newRecord(r, transformed);
+    }
+
+    @Override
+    protected R newRecord(R r, SchemaAndValue transformed) {
+      return r.newRecord(
+          r.topic(),
+          r.kafkaPartition(),
+          r.keySchema(),
+          r.key(),
+          transformed.schema(),
+          transformed.value(),
+          r.timestamp()
+      );
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.transform.xml;
+
+import com.github.jcustenborder.kafka.connect.utils.config.ConfigKeyBuilder;
+import com.github.jcustenborder.kafka.connect.utils.config.ConfigUtils;
+import com.github.jcustenborder.kafka.connect.utils.config.Description;
+import com.github.jcustenborder.kafka.connect.utils.config.ValidEnum;
+import com.github.jcustenborder.kafka.connect.utils.config.recommenders.Recommenders;
+import com.github.jcustenborder.kafka.connect.utils.config.validators.Validators;
+import org.apache.kafka.common.config.ConfigDef;
+
+import java.nio.charset.Charset;
+import java.util.Map;
+
+/**
+ * Config for {@link ToXml}. The schema settings come from {@link XmlSchemaConfig}, so a schema
+ * configured the same way as for {@link FromXml} shares the compiled classes.
+ */
+class ToXmlConfig extends XmlSchemaConfig {
+  public static final String OUTPUT_TYPE_CONFIG = "output.type";
+  public static final String OUTPUT_CHARSET_CONFIG = "output.charset";
+  public static final String OUTPUT_FORMATTED_ENABLED_CONFIG = "output.formatted.enabled";
+  public static final String MARSHALLER_POOL_SIZE_CONFIG = "marshaller.pool.size";
+  static final String OUTPUT_TYPE_DOC = "The type of the xml written to the record. " +
+      ConfigUtils.enumDescription(OutputType.class);
+  static final String OUTPUT_CHARSET_DOC = "The charset the xml is encoded with.";
+  static final String OUTPUT_FORMATTED_ENABLED_DOC = "Flag to determine if the xml is indented.";
+  static final String MARSHALLER_POOL_SIZE_DOC = "The maximum number of idle marshallers, along with their " +
+      "output buffers, to keep for reuse.";
+
+  public final OutputType outputType;
+  public final Charset outputCharset;
+  public final boolean outputFormattedEnabled;
+  public final int marshallerPoolSize;
+
+  public ToXmlConfig(Map<?, ?> originals) {
+    super(config(), originals);
+    this.outputType = ConfigUtils.getEnum(OutputType.class, this, OUTPUT_TYPE_CONFIG);
+    this.outputCharset = Charset.forName(getString(OUTPUT_CHARSET_CONFIG));
+    this.outputFormattedEnabled = getBoolean(OUTPUT_FORMATTED_ENABLED_CONFIG);
+    this.marshallerPoolSize = getInt(MARSHALLER_POOL_SIZE_CONFIG);
+  }
+
+  public static ConfigDef config() {
+    return XmlSchemaConfig.config()
+        .define(
+            ConfigKeyBuilder.of(OUTPUT_TYPE_CONFIG, ConfigDef.Type.STRING)
+                .documentation(OUTPUT_TYPE_DOC)
+                .importance(ConfigDef.Importance.MEDIUM)
+                .defaultValue(OutputType.BYTES.name())
+                .validator(ValidEnum.of(OutputType.class))
+                .recommender(Recommenders.enumValues(OutputType.class))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(OUTPUT_CHARSET_CONFIG, ConfigDef.Type.STRING)
+                .documentation(OUTPUT_CHARSET_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue("UTF-8")
+                .validator(Validators.validCharset())
+                .recommender(Recommenders.charset())
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(OUTPUT_FORMATTED_ENABLED_CONFIG, ConfigDef.Type.BOOLEAN)
+                .documentation(OUTPUT_FORMATTED_ENABLED_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(false)
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(MARSHALLER_POOL_SIZE_CONFIG, ConfigDef.Type.INT)
+                .documentation(MARSHALLER_POOL_SIZE_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(4)
+                .validator(ConfigDef.Range.atLeast(1))
+                .build()
+        );
+  }
+
+  public enum OutputType {
+    @Description("Write the xml as bytes encoded with `" + OUTPUT_CHARSET_CONFIG + "`.")
+    BYTES,
+    @Description("Write the xml as a string.")
+    STRING
+  }
+}
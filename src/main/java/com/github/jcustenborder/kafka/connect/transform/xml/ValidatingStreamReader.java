@@ -0,0 +1,187 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.transform.xml;
+
+import com.google.common.base.Strings;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+import javax.xml.validation.ValidatorHandler;
+
+/**
+ * Validates the document while it is read by passing every event the caller reads on to a
+ * {@link ValidatorHandler}, so the document is only parsed once. Elements the caller skips are
+ * still read through this reader and validated. Validation ends with the end of the root element,
+ * as the caller stops reading there.
+ *
+ * A document that is not valid fails with an {@link XMLStreamException} that wraps the
+ * {@link SAXException} of the validator.
+ */
+class ValidatingStreamReader extends StreamReaderDelegate implements Locator {
+  final ValidatorHandler handler;
+  final AttributesImpl attributes = new AttributesImpl();
+  int depth;
+
+  ValidatingStreamReader(XMLStreamReader reader, ValidatorHandler handler) throws XMLStreamException {
+    super(reader);
+    this.handler = handler;
+    this.handler.setDocumentLocator(this);
+    try {
+      this.handler.startDocument();
+    } catch (SAXException e) {
+      throw new XMLStreamException(e);
+    }
+  }
+
+  @Override
+  public int next() throws XMLStreamException {
+    final int event = super.next();
+    try {
+      switch (event) {
+        case XMLStreamConstants.START_ELEMENT:
+          startElement();
+          break;
+        case XMLStreamConstants.END_ELEMENT:
+          endElement();
+          break;
+        case XMLStreamConstants.CHARACTERS:
+        case XMLStreamConstants.CDATA:
+          this.handler.characters(getTextCharacters(), getTextStart(), getTextLength());
+          break;
+        case XMLStreamConstants.SPACE:
+          this.handler.ignorableWhitespace(getTextCharacters(), getTextStart(), getTextLength());
+          break;
+        default:
+          break;
+      }
+    } catch (SAXException e) {
+      throw new XMLStreamException(e);
+    }
+    return event;
+  }
+
+  void startElement() throws SAXException {
+    for (int i = 0; i < getNamespaceCount(); i++) {
+      this.handler.startPrefixMapping(Strings.nullToEmpty(getNamespacePrefix(i)), Strings.nullToEmpty(getNamespaceURI(i)));
+    }
+    this.attributes.clear();
+    for (int i = 0; i < getAttributeCount(); i++) {
+      this.attributes.addAttribute(
+          Strings.nullToEmpty(getAttributeNamespace(i)),
+          getAttributeLocalName(i),
+          qualifiedName(getAttributePrefix(i), getAttributeLocalName(i)),
+          getAttributeType(i),
+          getAttributeValue(i)
+      );
+    }
+    this.depth++;
+    this.handler.startElement(
+        Strings.nullToEmpty(getNamespaceURI()),
+        getLocalName(),
+        qualifiedName(getPrefix(), getLocalName()),
+        this.attributes
+    );
+  }
+
+  void endElement() throws SAXException {
+    this.handler.endElement(
+        Strings.nullToEmpty(getNamespaceURI()),
+        getLocalName(),
+        qualifiedName(getPrefix(), getLocalName())
+    );
+    for (int i = 0; i < getNamespaceCount(); i++) {
+      this.handler.endPrefixMapping(Strings.nullToEmpty(getNamespacePrefix(i)));
+    }
+    if (0 == --this.depth) {
+      this.handler.endDocument();
+    }
+  }
+
+  static String qualifiedName(String prefix, String localName) {
+    return Strings.isNullOrEmpty(prefix) ? localName : prefix + ":" + localName;
+  }
+
+  /**
+   * Reads through {@link #next()} as the parent would otherwise read the events itself.
+   */
+  @Override
+  public int nextTag() throws XMLStreamException {
+    int event = next();
+    while ((XMLStreamConstants.CHARACTERS == event || XMLStreamConstants.CDATA == event) && isWhiteSpace() ||
+        XMLStreamConstants.SPACE == event ||
+        XMLStreamConstants.PROCESSING_INSTRUCTION == event ||
+        XMLStreamConstants.COMMENT == event) {
+      event = next();
+    }
+    if (XMLStreamConstants.START_ELEMENT != event && XMLStreamConstants.END_ELEMENT != event) {
+      throw new XMLStreamException("Expected a start or end element.", getLocation());
+    }
+    return event;
+  }
+
+  /**
+   * Reads through {@link #next()} as the parent would otherwise read the events itself.
+   */
+  @Override
+  public String getElementText() throws XMLStreamException {
+    final StringBuilder builder = new StringBuilder();
+    int event = next();
+    while (XMLStreamConstants.END_ELEMENT != event) {
+      if (XMLStreamConstants.CHARACTERS == event ||
+          XMLStreamConstants.CDATA == event ||
+          XMLStreamConstants.SPACE == event ||
+          XMLStreamConstants.ENTITY_REFERENCE == event) {
+        builder.append(getText());
+      } else if (XMLStreamConstants.START_ELEMENT == event) {
+        throw new XMLStreamException("Element text must not contain elements.", getLocation());
+      } else if (XMLStreamConstants.END_DOCUMENT == event) {
+        throw new XMLStreamException("Unexpected end of document while reading element text.", getLocation());
+      }
+      event = next();
+    }
+    return builder.toString();
+  }
+
+  @Override
+  public String getPublicId() {
+    final Location location = getLocation();
+    return null == location ? null : location.getPublicId();
+  }
+
+  @Override
+  public String getSystemId() {
+    final Location location = getLocation();
+    return null == location ? null : location.getSystemId();
+  }
+
+  @Override
+  public int getLineNumber() {
+    final Location location = getLocation();
+    return null == location ? -1 : location.getLineNumber();
+  }
+
+  @Override
+  public int getColumnNumber() {
+    final Location location = getLocation();
+    return null == location ? -1 : location.getColumnNumber();
+  }
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.transform.xml;
+
+import org.apache.kafka.common.config.ConfigException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.stream.XMLInputFactory;
+import java.lang.reflect.Method;
+
+/**
+ * Creates the {@link XMLInputFactory} used to read xml. The factory is created once when the
+ * transformation is configured and shared by every record, as {@link XMLInputFactory} is thread
+ * safe once configured.
+ */
+class XMLInputFactories {
+  private static final Logger log = LoggerFactory.getLogger(XMLInputFactories.class);
+
+  private XMLInputFactories() {
+
+  }
+
+  static XMLInputFactory create(FromXmlConfig config) {
+    final XMLInputFactory result = newFactory(config.parserBackend);
+    log.info("create() - Using {} for parsing xml.", result.getClass().getName());
+    result.setProperty(XMLInputFactory.SUPPORT_DTD, config.parserDtdEnabled);
+    result.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, config.parserExternalEntitiesEnabled);
+    result.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, config.parserNamespaceAware);
+    result.setProperty(XMLInputFactory.IS_VALIDATING, config.parserValidating);
+    return result;
+  }
+
+  static XMLInputFactory newFactory(FromXmlConfig.ParserBackend backend) {
+    switch (backend) {
+      case DEFAULT:
+        return XMLInputFactory.newFactory();
+      case JDK:
+        return jdkFactory();
+      case WOODSTOX:
+        return newFactory(backend, "com.ctc.wstx.stax.WstxInputFactory");
+      case AALTO:
+        return newFactory(backend, "com.fasterxml.aalto.stax.InputFactoryImpl");
+      default:
+        throw new IllegalStateException(
+            String.format("Parser backend %s is not handled.", backend)
+        );
+    }
+  }
+
+  /**
+   * Java 9 and later do not export the package of the built in implementation, but expose it
+   * through {@code XMLInputFactory.newDefaultFactory()}.
+   */
+  static XMLInputFactory jdkFactory() {
+    try {
+      Method method = XMLInputFactory.class.getMethod("newDefaultFactory");
+      return (XMLInputFactory) method.invoke(null);
+    } catch (NoSuchMethodException e) {
+      return newFactory(FromXmlConfig.ParserBackend.JDK, "com.sun.xml.internal.stream.XMLInputFactoryImpl");
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Exception thrown while creating the built in XMLInputFactory", e);
+    }
+  }
+
+  static XMLInputFactory newFactory(FromXmlConfig.ParserBackend backend, String className) {
+    try {
+      Class<?> factoryClass = Class.forName(className, true, XMLInputFactories.class.getClassLoader());
+      return (XMLInputFactory) factoryClass.newInstance();
+    } catch (ClassNotFoundException e) {
+      throw new ConfigException(
+          FromXmlConfig.PARSER_BACKEND_CONFIG,
+          backend.name(),
+          String.format("Could not find %s. Add the jar for the parser to the plugin path.", className)
+      );
+    } catch (InstantiationException | IllegalAccessException e) {
+      throw new IllegalStateException("Exception thrown while creating " + className, e);
+    }
+  }
+}
@@ -17,134 +17,362 @@ package com.github.jcustenborder.kafka.connect.transform.xml;
 
 import com.github.jcustenborder.kafka.connect.xml.Connectable;
 import com.github.jcustenborder.kafka.connect.xml.KafkaConnectPlugin;
+import com.google.common.base.Charsets;
 import com.google.common.base.Joiner;
-import com.google.common.collect.ImmutableList;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.Files;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
 import com.sun.codemodel.JCodeModel;
 import com.sun.tools.xjc.Options;
 import com.sun.tools.xjc.api.S2JJAXBModel;
 import com.sun.tools.xjc.api.SchemaCompiler;
 import com.sun.tools.xjc.api.XJC;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.connect.data.Struct;
 import org.apache.kafka.connect.errors.ConnectException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
 
 import javax.tools.Diagnostic;
 import javax.tools.DiagnosticCollector;
 import javax.tools.JavaCompiler;
 import javax.tools.JavaFileObject;
-import javax.tools.StandardJavaFileManager;
 import javax.tools.ToolProvider;
+import javax.xml.XMLConstants;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import java.io.ByteArrayInputStream;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.net.MalformedURLException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.CodeSource;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class XSDCompiler implements Closeable {
   private static final Logger log = LoggerFactory.getLogger(XSDCompiler.class);
-  final File tempDirectory;
-  final URLClassLoader classLoader;
-  final FromXmlConfig config;
-
-  public XSDCompiler(FromXmlConfig config) {
+  /**
+   * Bump this when the layout or content of a cache entry changes so stale entries are ignored.
+   */
+  static final int CACHE_FORMAT_VERSION = 2;
+  static final String CACHE_COMPLETE_MARKER = ".complete";
+  /**
+   * Number of times source was generated and compiled, so tests can tell a cache hit apart.
+   */
+  static final AtomicLong COMPILATIONS = new AtomicLong();
+  static final String ECLIPSE_COMPILER_CLASS = "org.eclipse.jdt.internal.compiler.tool.EclipseCompiler";
+  /**
+   * Elements of a schema that pull in another schema through their {@code schemaLocation}.
+   */
+  static final Set<String> SCHEMA_REFERENCES = ImmutableSet.of("include", "import", "redefine", "override");
+  final XmlSchemaConfig config;
+  ClassLoader classLoader;
+
+  public XSDCompiler(XmlSchemaConfig config) {
     this.config = config;
-    this.tempDirectory = Files.createTempDir();
-    try {
-      this.classLoader = new URLClassLoader(
-          new URL[]{
-              tempDirectory.toURL()
-          },
-          Connectable.class.getClassLoader()
-      );
-    } catch (MalformedURLException e) {
-      throw new IllegalStateException(e);
-    }
   }
 
+  /**
+   * Method is used to generate a key that uniquely identifies the compiled output of the configured
+   * schemas. The key is a hash of the content of the schemas and the schemas they include or import,
+   * the package names, the xjc options, the versions of xjc and the code generation plugin and the
+   * java version the classes target.
+   *
+   * @return hex encoded sha-256 hash.
+   * @throws IOException thrown if a schema could not be read.
+   */
+  String cacheKey() throws IOException {
+    if (XmlSchemaConfig.ModelSource.PRECOMPILED == this.config.modelSource) {
+      return "precompiled:" + Joiner.on(':').join(packages());
+    }
+    Hasher hasher = Hashing.sha256().newHasher()
+        .putInt(CACHE_FORMAT_VERSION)
+        .putBoolean(this.config.optionsStrictCheck)
+        .putBoolean(this.config.optionsAutomaticNameConflictResolution)
+        .putString(System.getProperty("java.specification.version"), Charsets.UTF_8);
+    // The generated source changes with the generator, so a new plugin or xjc jar gets a new entry.
+    for (Class<?> cls : Arrays.asList(KafkaConnectPlugin.class, Options.class)) {
+      hasher.putString(version(cls), Charsets.UTF_8);
+    }
 
-  public JAXBContext compileContext() throws IOException {
+    final XMLInputFactory inputFactory = XMLInputFactories.jdkFactory();
+    inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    for (XmlSchemaConfig.SchemaSet schemaSet : this.config.schemaSets) {
+      hasher.putString(schemaSet.xjcPackage, Charsets.UTF_8);
+      hasher.putInt(schemaSet.urls.size());
+      final Set<String> visited = new HashSet<>();
+      for (URL schemaUrl : schemaSet.urls) {
+        hashSchema(hasher, inputFactory, schemaUrl, visited);
+      }
+    }
 
+    return hasher.hash().toString();
+  }
 
-    List<String> objectFactoryClasses = new ArrayList<>();
-    objectFactoryClasses.add(Connectable.class.getName());
-    Set<String> packages = new LinkedHashSet<>();
-    packages.add(config.xjcPackage);
-    String objectFactoryClass = String.format("%s.ObjectFactory", this.config.xjcPackage);
-    objectFactoryClasses.add(objectFactoryClass);
+  /**
+   * Method is used to hash a schema followed by the schemas it includes, imports or redefines, as
+   * xjc compiles those as well.
+   *
+   * @param visited urls that were already hashed, so schemas that import each other are only
+   *                read once.
+   */
+  static void hashSchema(Hasher hasher, XMLInputFactory inputFactory, URL schemaUrl, Set<String> visited) throws IOException {
+    if (!visited.add(schemaUrl.toString())) {
+      return;
+    }
+    log.trace("hashSchema() - Reading {}", schemaUrl);
+    final byte[] buffer;
+    try (InputStream inputStream = schemaUrl.openStream()) {
+      buffer = ByteStreams.toByteArray(inputStream);
+    }
+    hasher.putString(schemaUrl.toString(), Charsets.UTF_8);
+    hasher.putInt(buffer.length);
+    hasher.putBytes(buffer);
+    for (String schemaLocation : schemaLocations(inputFactory, schemaUrl, buffer)) {
+      hashSchema(hasher, inputFactory, new URL(schemaUrl, schemaLocation), visited);
+    }
+  }
 
-    SchemaCompiler schemaCompiler = XJC.createSchemaCompiler();
+  /**
+   * Method is used to read the locations of the schemas a schema refers to. A schema that cannot be
+   * parsed returns the locations read so far, as the compilation reports the actual error.
+   */
+  static List<String> schemaLocations(XMLInputFactory inputFactory, URL schemaUrl, byte[] buffer) {
+    final List<String> result = new ArrayList<>();
+    try {
+      final XMLStreamReader reader = inputFactory.createXMLStreamReader(new ByteArrayInputStream(buffer));
+      try {
+        while (reader.hasNext()) {
+          if (XMLStreamConstants.START_ELEMENT == reader.next() &&
+              XMLConstants.W3C_XML_SCHEMA_NS_URI.equals(reader.getNamespaceURI()) &&
+              SCHEMA_REFERENCES.contains(reader.getLocalName())) {
+            final String schemaLocation = reader.getAttributeValue(null, "schemaLocation");
+            if (!Strings.isNullOrEmpty(schemaLocation)) {
+              result.add(schemaLocation.trim());
+            }
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    } catch (XMLStreamException e) {
+      log.debug("schemaLocations() - Exception thrown while reading {}", schemaUrl, e);
+    }
+    return result;
+  }
 
-    Options options = schemaCompiler.getOptions();
-    options.activePlugins.add(new KafkaConnectPlugin());
-    options.strictCheck = this.config.optionsStrictCheck;
+  /**
+   * Method is used to identify the jar a class was loaded from.
+   *
+   * @param cls class to look up.
+   * @return implementation version and location of the jar.
+   */
+  static String version(Class<?> cls) {
+    final Package classPackage = cls.getPackage();
+    final String version = null == classPackage ? null : classPackage.getImplementationVersion();
+    final CodeSource codeSource = cls.getProtectionDomain().getCodeSource();
+    final URL location = null == codeSource ? null : codeSource.getLocation();
+    return String.format("%s:%s@%s", cls.getName(), version, location);
+  }
 
-    options.automaticNameConflictResolution = this.config.optionsAutomaticNameConflictResolution;
-    schemaCompiler.setDefaultPackageName(this.config.xjcPackage);
-    schemaCompiler.setErrorListener(new ConnectErrorListener(log));
-    schemaCompiler.setEntityResolver(options.entityResolver);
+  public JAXBContext compileContext() throws IOException {
+    final ClassLoader parent = Connectable.class.getClassLoader();
+
+    if (XmlSchemaConfig.ModelSource.PRECOMPILED == this.config.modelSource) {
+      log.info("compileContext() - Loading precompiled classes in {}", packages());
+      this.classLoader = parent;
+    } else if (this.config.compilerCacheEnabled) {
+      final String cacheKey = cacheKey();
+      final File cacheDirectory = new File(this.config.compilerCachePath, cacheKey);
+      createCachePath(this.config.compilerCachePath);
+
+      if (new File(cacheDirectory, CACHE_COMPLETE_MARKER).isFile()) {
+        checkCachePath(cacheDirectory);
+        log.info("compileContext() - Loading compiled schema from cache {}", cacheDirectory);
+        this.classLoader = new URLClassLoader(
+            new URL[]{
+                cacheDirectory.toURI().toURL()
+            },
+            parent
+        );
+      } else {
+        log.info("compileContext() - Cache miss for {}. Compiling schema.", cacheDirectory);
+        final Map<String, byte[]> classes = generateAndCompile();
+        final File stagingDirectory = java.nio.file.Files.createTempDirectory(
+            this.config.compilerCachePath.toPath(),
+            cacheKey + "."
+        ).toFile();
+        writeClasses(stagingDirectory, classes);
+        publish(stagingDirectory, cacheDirectory);
+        this.classLoader = new ByteArrayClassLoader(classes, parent);
+      }
+    } else {
+      this.classLoader = new ByteArrayClassLoader(generateAndCompile(), parent);
+    }
 
-    for (URL schemaUrl : this.config.schemaUrls) {
-      log.info("compileContext() - Generating source for {}", schemaUrl);
+    return loadContext();
+  }
 
-      InputSource inputSource = new InputSource();
-      inputSource.setSystemId(schemaUrl.toString());
-      schemaCompiler.parseSchema(inputSource);
+  /**
+   * Method is used to create the cache directory so that only the owner can access it, and to check
+   * an existing one. The classes in the cache are loaded into the worker, so a cache that another
+   * user can write to would allow that user to run code in the worker.
+   */
+  static void createCachePath(File cachePath) throws IOException {
+    final Path path = cachePath.toPath();
+    if (!java.nio.file.Files.isDirectory(path)) {
+      log.info("createCachePath() - Creating {}", cachePath);
+      if (isPosix(path)) {
+        java.nio.file.Files.createDirectories(
+            path,
+            PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------"))
+        );
+      } else {
+        java.nio.file.Files.createDirectories(path);
+      }
     }
+    checkCachePath(cachePath);
+  }
 
-    S2JJAXBModel model = schemaCompiler.bind();
-
-    if (null == model) {
-      throw new ConnectException("Schema compiler could not bind schema.");
+  /**
+   * Method is used to check that a directory of the cache is owned by the user running the worker
+   * and cannot be written to by anyone else.
+   *
+   * @throws ConfigException if the directory could be changed by another user.
+   */
+  static void checkCachePath(File directory) throws IOException {
+    final Path path = directory.toPath();
+    final UserPrincipal owner = java.nio.file.Files.getOwner(path);
+    final UserPrincipal user = path.getFileSystem()
+        .getUserPrincipalLookupService()
+        .lookupPrincipalByName(System.getProperty("user.name"));
+    if (!user.equals(owner)) {
+      throw new ConfigException(
+          XmlSchemaConfig.COMPILER_CACHE_PATH_CONFIG,
+          directory.toString(),
+          String.format("Must be owned by '%s' but is owned by '%s'.", user.getName(), owner.getName())
+      );
     }
+    if (isPosix(path)) {
+      final Set<PosixFilePermission> permissions = java.nio.file.Files.getPosixFilePermissions(path);
+      if (permissions.contains(PosixFilePermission.GROUP_WRITE) || permissions.contains(PosixFilePermission.OTHERS_WRITE)) {
+        throw new ConfigException(
+            XmlSchemaConfig.COMPILER_CACHE_PATH_CONFIG,
+            directory.toString(),
+            String.format("Must not be writable by other users. Permissions are '%s'.", PosixFilePermissions.toString(permissions))
+        );
+      }
+    }
+  }
 
-    JCodeModel jCodeModel = model.generateCode(null, new ConnectErrorListener(log));
+  static boolean isPosix(Path path) {
+    return path.getFileSystem().supportedFileAttributeViews().contains("posix");
+  }
 
-    log.trace("compileContext() - Building model to {}", tempDirectory);
-    jCodeModel.build(tempDirectory);
+  static void writeClasses(File outputDirectory, Map<String, byte[]> classes) throws IOException {
+    for (Map.Entry<String, byte[]> cls : classes.entrySet()) {
+      final File outputFile = new File(outputDirectory, cls.getKey().replace('.', File.separatorChar) + ".class");
+      log.trace("writeClasses() - Writing {}", outputFile);
+      Files.createParentDirs(outputFile);
+      Files.write(cls.getValue(), outputFile);
+    }
+  }
 
-    List<File> sourceFiles =
-        StreamSupport.stream(
-            Files.fileTraverser().depthFirstPostOrder(tempDirectory).spliterator(),
-            false
-        )
-            .filter(File::isFile)
-            .collect(Collectors.toList());
+  /**
+   * Method is used to move a compiled staging directory into the cache. Multiple tasks could be
+   * compiling the same schema at the same time, so the first one to finish wins and the others
+   * discard their output.
+   */
+  void publish(File stagingDirectory, File cacheDirectory) throws IOException {
+    Files.touch(new File(stagingDirectory, CACHE_COMPLETE_MARKER));
+    try {
+      java.nio.file.Files.move(
+          stagingDirectory.toPath(),
+          cacheDirectory.toPath(),
+          StandardCopyOption.ATOMIC_MOVE
+      );
+      log.info("publish() - Cached compiled schema to {}", cacheDirectory);
+    } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+      log.info("publish() - {} was already cached by another task.", cacheDirectory);
+      MoreFiles.deleteRecursively(stagingDirectory.toPath(), RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+  }
+
+  /**
+   * Method is used to generate the source for the schemas and compile it. The source and the
+   * compiled classes are kept in memory. Each schema set is bound separately so its classes are
+   * generated in its own package, and the source of every set is compiled together.
+   *
+   * @return binary class name to bytecode.
+   * @throws IOException thrown if the schema could not be read.
+   */
+  Map<String, byte[]> generateAndCompile() throws IOException {
+    COMPILATIONS.incrementAndGet();
+    MemoryCodeWriter codeWriter = new MemoryCodeWriter();
+    for (XmlSchemaConfig.SchemaSet schemaSet : this.config.schemaSets) {
+      generate(schemaSet).build(codeWriter);
+    }
+    final Map<String, String> sources = codeWriter.sources();
 
     if (log.isTraceEnabled()) {
-      log.trace("compileContext() - found {} file(s).\n{}",
-          sourceFiles.size(),
-          Joiner.on('\n').join(sourceFiles)
+      log.trace("compileContext() - generated {} file(s).\n{}",
+          sources.size(),
+          Joiner.on('\n').join(sources.keySet())
       );
     }
 
-    final String classPath = System.getProperty("java.class.path");
-    List<String> classPathList = new ArrayList<>();
-    classPathList.addAll(ImmutableList.copyOf(classPath.split(":")));
-    final URL connectableUrl = Connectable.class.getProtectionDomain().getCodeSource().getLocation();
-    classPathList.add(connectableUrl.toString());
+    List<JavaFileObject> compilationUnit = new ArrayList<>(sources.size());
+    for (Map.Entry<String, String> source : sources.entrySet()) {
+      compilationUnit.add(new MemoryJavaFileManager.SourceInput(source.getKey(), source.getValue()));
+    }
 
     List<String> optionList = new ArrayList<>();
     optionList.add("-classpath");
-    optionList.add(Joiner.on(':').join(classPathList));
+    optionList.add(Joiner.on(File.pathSeparatorChar).join(classPath()));
 
     DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
-    JavaCompiler javaCompiler = ToolProvider.getSystemJavaCompiler();
+    JavaCompiler javaCompiler = javaCompiler();
     Locale locale = Locale.getDefault();
 
-    try (StandardJavaFileManager fileManager = javaCompiler.getStandardFileManager(diagnostics, locale, null)) {
-      Iterable<? extends JavaFileObject> compilationUnit = fileManager.getJavaFileObjectsFromFiles(sourceFiles);
+    try (MemoryJavaFileManager fileManager = new MemoryJavaFileManager(
+        javaCompiler.getStandardFileManager(diagnostics, locale, StandardCharsets.UTF_8))) {
       JavaCompiler.CompilationTask compilerTask = javaCompiler.getTask(
           null,
           fileManager,
@@ -160,13 +388,186 @@ public class XSDCompiler implements Closeable {
           log.error(
               "Error on line {} in {}\n{}",
               diagnostic.getLineNumber(),
-              diagnostic.getSource().toUri(),
+              null != diagnostic.getSource() ? diagnostic.getSource().toUri() : null,
               diagnostic.getMessage(locale)
           );
         }
+        throw new ConnectException("Exception while compiling the source generated from the schema.");
+      }
+      return fileManager.classes();
+    }
+  }
+
+  JCodeModel generate(XmlSchemaConfig.SchemaSet schemaSet) {
+    SchemaCompiler schemaCompiler = XJC.createSchemaCompiler();
+
+    Options options = schemaCompiler.getOptions();
+    options.activePlugins.add(new KafkaConnectPlugin());
+    options.strictCheck = this.config.optionsStrictCheck;
+
+    options.automaticNameConflictResolution = this.config.optionsAutomaticNameConflictResolution;
+    schemaCompiler.setDefaultPackageName(schemaSet.xjcPackage);
+    schemaCompiler.setErrorListener(new ConnectErrorListener(log));
+    schemaCompiler.setEntityResolver(options.entityResolver);
+
+    for (URL schemaUrl : schemaSet.urls) {
+      log.info("generate() - Generating source for {} in {}", schemaUrl, schemaSet.xjcPackage);
+
+      InputSource inputSource = new InputSource();
+      inputSource.setSystemId(schemaUrl.toString());
+      schemaCompiler.parseSchema(inputSource);
+    }
+
+    S2JJAXBModel model = schemaCompiler.bind();
+
+    if (null == model) {
+      throw new ConnectException("Schema compiler could not bind schema.");
+    }
+
+    return model.generateCode(null, new ConnectErrorListener(log));
+  }
+
+  /**
+   * Method is used to select the compiler based on the configured compiler type.
+   *
+   * @return compiler used to compile the generated source.
+   */
+  JavaCompiler javaCompiler() {
+    final JavaCompiler systemCompiler = ToolProvider.getSystemJavaCompiler();
+    switch (this.config.compilerType) {
+      case JDK:
+        if (null == systemCompiler) {
+          throw new ConnectException(
+              String.format(
+                  "The JDK compiler is not available. Run the worker on a JDK or generate the classes ahead of time " +
+                      "and set '%s' to '%s'.",
+                  XmlSchemaConfig.MODEL_SOURCE_CONFIG,
+                  XmlSchemaConfig.ModelSource.PRECOMPILED
+              )
+          );
+        }
+        return systemCompiler;
+      case ECLIPSE:
+        return eclipseCompiler();
+      default:
+        if (null != systemCompiler) {
+          return systemCompiler;
+        }
+        log.info("javaCompiler() - JDK compiler is not available. Trying the Eclipse compiler.");
+        return eclipseCompiler();
+    }
+  }
+
+  /**
+   * The Eclipse compiler is not shipped with this plugin and has to be added to the plugin
+   * directory. ecj 4.6 predates the module system and reads the system classes from
+   * {@code rt.jar}, which Java 9 and later no longer have. Compiling there fails without a
+   * diagnostic that explains why, so the runtime is checked up front instead.
+   */
+  JavaCompiler eclipseCompiler() {
+    if (!eclipseCompilerSupported()) {
+      throw new ConfigException(
+          XmlSchemaConfig.COMPILER_TYPE_CONFIG,
+          this.config.compilerType.name(),
+          String.format(
+              "The Eclipse compiler can only be used on Java 8, but the worker runs on Java %s. Run the worker on a JDK " +
+                  "so '%s' can be used, or generate the classes ahead of time and set '%s' to '%s'.",
+              System.getProperty("java.specification.version"),
+              XmlSchemaConfig.CompilerType.JDK,
+              XmlSchemaConfig.MODEL_SOURCE_CONFIG,
+              XmlSchemaConfig.ModelSource.PRECOMPILED
+          )
+      );
+    }
+    final Class<?> compilerClass;
+    try {
+      compilerClass = Class.forName(ECLIPSE_COMPILER_CLASS, true, XSDCompiler.class.getClassLoader());
+    } catch (ClassNotFoundException e) {
+      throw new ConfigException(
+          XmlSchemaConfig.COMPILER_TYPE_CONFIG,
+          this.config.compilerType.name(),
+          String.format(
+              "The Eclipse compiler %s could not be found. Add the ecj jar to the plugin directory, " +
+                  "run the worker on a JDK, or generate the classes ahead of time and set '%s' to '%s'.",
+              ECLIPSE_COMPILER_CLASS,
+              XmlSchemaConfig.MODEL_SOURCE_CONFIG,
+              XmlSchemaConfig.ModelSource.PRECOMPILED
+          )
+      );
+    }
+    try {
+      return (JavaCompiler) compilerClass.newInstance();
+    } catch (InstantiationException | IllegalAccessException e) {
+      throw new IllegalStateException("Exception thrown while creating " + ECLIPSE_COMPILER_CLASS, e);
+    }
+  }
+
+  /**
+   * @return true if the Eclipse compiler can compile on this runtime.
+   */
+  static boolean eclipseCompilerSupported() {
+    // Java 8 and earlier report 1.x.
+    return System.getProperty("java.specification.version", "").startsWith("1.");
+  }
+
+  /**
+   * Method is used to build the classpath for the compiler. Kafka Connect loads plugins in an
+   * isolated class loader, so the jars for this plugin are not on {@code java.class.path}. The
+   * urls of every class loader from the plugin class loader up are added first.
+   *
+   * @return classpath entries.
+   */
+  static Set<String> classPath() {
+    Set<String> result = new LinkedHashSet<>();
+    for (ClassLoader loader = Connectable.class.getClassLoader(); null != loader; loader = loader.getParent()) {
+      if (loader instanceof URLClassLoader) {
+        for (URL url : ((URLClassLoader) loader).getURLs()) {
+          addClassPath(result, url);
+        }
       }
     }
+    for (Class<?> cls : Arrays.asList(Connectable.class, Struct.class, XmlElement.class)) {
+      final CodeSource codeSource = cls.getProtectionDomain().getCodeSource();
+      if (null != codeSource) {
+        addClassPath(result, codeSource.getLocation());
+      }
+    }
+    final String classPath = System.getProperty("java.class.path");
+    if (!Strings.isNullOrEmpty(classPath)) {
+      result.addAll(Splitter.on(File.pathSeparatorChar).omitEmptyStrings().splitToList(classPath));
+    }
+    return result;
+  }
+
+  static void addClassPath(Set<String> classPath, URL url) {
+    if (null == url || !"file".equals(url.getProtocol())) {
+      return;
+    }
+    try {
+      classPath.add(new File(url.toURI()).getAbsolutePath());
+    } catch (URISyntaxException | IllegalArgumentException e) {
+      log.warn("addClassPath() - Could not convert '{}' to a file.", url, e);
+    }
+  }
+
+  /**
+   * @return the packages that xjc generates classes in.
+   */
+  public Set<String> packages() {
+    Set<String> packages = new LinkedHashSet<>();
+    for (XmlSchemaConfig.SchemaSet schemaSet : this.config.schemaSets) {
+      packages.add(schemaSet.xjcPackage);
+    }
+    return packages;
+  }
 
+  JAXBContext loadContext() {
+    List<String> objectFactoryClasses = new ArrayList<>();
+    objectFactoryClasses.add(Connectable.class.getName());
+    Set<String> packages = packages();
+    for (String packageName : packages) {
+      objectFactoryClasses.add(String.format("%s.ObjectFactory", packageName));
+    }
 
     List<Class<?>> objectFactories = new ArrayList<>();
 
@@ -178,6 +579,13 @@ public class XSDCompiler implements Closeable {
             classLoader.loadClass(s)
         );
       } catch (ClassNotFoundException e) {
+        if (XmlSchemaConfig.ModelSource.PRECOMPILED == this.config.modelSource) {
+          throw new ConfigException(
+              XmlSchemaConfig.PACKAGE_CONFIG,
+              s.substring(0, s.lastIndexOf('.')),
+              String.format("Could not find %s. Add the jar created by ModelJarGenerator to the plugin path.", s)
+          );
+        }
         throw new IllegalStateException(
             "Exception thrown while loading " + s,
             e
@@ -193,24 +601,34 @@ public class XSDCompiler implements Closeable {
     }
   }
 
+  /**
+   * Method is used to compile the schemas into a {@link Schema} that documents can be validated
+   * against.
+   *
+   * @return compiled schema.
+   */
+  public Schema compileValidationSchema() {
+    final SchemaFactory schemaFactory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+    final List<Source> sources = new ArrayList<>();
+    for (XmlSchemaConfig.SchemaSet schemaSet : this.config.schemaSets) {
+      for (URL schemaUrl : schemaSet.urls) {
+        sources.add(new StreamSource(schemaUrl.toString()));
+      }
+    }
+    log.info("compileValidationSchema() - Compiling {} schema(s)", sources.size());
+    try {
+      return schemaFactory.newSchema(sources.toArray(new Source[0]));
+    } catch (SAXException e) {
+      throw new ConnectException("Exception thrown while compiling the schema for validation.", e);
+    }
+  }
+
   @Override
   public void close() throws IOException {
-//    log.trace("close() - Cleaning up temp directory '{}'", this.tempDirectory);
-//    java.nio.file.Files.walkFileTree(this.tempDirectory.toPath(), new SimpleFileVisitor<Path>() {
-//      @Override
-//      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-//        log.trace("close() - Deleting {}", file);
-//        java.nio.file.Files.delete(file);
-//        return FileVisitResult.CONTINUE;
-//      }
-//
-//      @Override
-//      public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
-//        log.trace("close() - Deleting {}", dir);
-//        java.nio.file.Files.delete(dir);
-//        return FileVisitResult.CONTINUE;
-//      }
-//    });
+    // Precompiled classes are loaded by the class loader of the plugin, which must stay open.
+    if (XmlSchemaConfig.ModelSource.PRECOMPILED != this.config.modelSource && this.classLoader instanceof Closeable) {
+      ((Closeable) this.classLoader).close();
+    }
   }
 
 //  static class SchemaState {
@@ -0,0 +1,331 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.transform.xml;
+
+import com.github.jcustenborder.kafka.connect.utils.config.ConfigKeyBuilder;
+import com.github.jcustenborder.kafka.connect.utils.config.ConfigUtils;
+import com.github.jcustenborder.kafka.connect.utils.config.Description;
+import com.github.jcustenborder.kafka.connect.utils.config.ValidEnum;
+import com.github.jcustenborder.kafka.connect.utils.config.recommenders.Recommenders;
+import com.github.jcustenborder.kafka.connect.utils.config.validators.ValidUrl;
+import com.google.common.base.Strings;
+import org.apache.kafka.common.config.AbstractConfig;
+import org.apache.kafka.common.config.ConfigDef;
+import org.apache.kafka.common.config.ConfigException;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Settings for the schemas and how the classes for them are generated and compiled. These are
+ * shared by {@link FromXmlConfig} and {@link ToXmlConfig} so both transformations share the compiled
+ * classes for a schema.
+ */
+class XmlSchemaConfig extends AbstractConfig {
+
+  public static final String SCHEMA_PATH_CONFIG = "schema.path";
+  public static final String PACKAGE_CONFIG = "package";
+  public static final String XJC_OPTIONS_STRICT_CHECK_CONFIG = "xjc.options.strict.check.enabled";
+  public static final String XJC_OPTIONS_AUTOMATIC_NAME_CONFLICT_RESOLUTION_ENABLED_CONFIG = "xjc.options.automatic.name.conflict.resolution.enabled";
+  public static final String XJC_OPTIONS_VERBOSE_CONFIG = "xjc.options.verbose.enabled";
+  public static final String COMPILER_CACHE_ENABLED_CONFIG = "compiler.cache.enabled";
+  public static final String COMPILER_CACHE_PATH_CONFIG = "compiler.cache.path";
+  public static final String COMPILER_TYPE_CONFIG = "compiler.type";
+  public static final String MODEL_SOURCE_CONFIG = "model.source";
+  public static final String SCHEMA_SETS_CONFIG = "schema.sets";
+  public static final String SCHEMA_SET_PREFIX = "schema.set.";
+  public static final String SCHEMA_SET_PATH_SUFFIX = ".path";
+  public static final String SCHEMA_SET_PACKAGE_SUFFIX = ".package";
+  static final String SCHEMA_PATH_DOC = "Urls to the schemas to load. http and https paths are supported. Required " +
+      "unless `" + MODEL_SOURCE_CONFIG + "` is `PRECOMPILED`.";
+  static final String PACKAGE_DOC = "The java package xjc will use to generate the source code in. This name will be applied to the resulting schema";
+  static final String XJC_OPTIONS_STRICT_CHECK_DOC = "xjc.options.strict.check.enabled";
+  static final String XJC_OPTIONS_AUTOMATIC_NAME_CONFLICT_RESOLUTION_ENABLED_DOC = "xjc.options.automatic.name.conflict.resolution.enabled";
+  static final String XJC_OPTIONS_VERBOSE_DOC = "xjc.options.verbose.enabled";
+  static final String COMPILER_CACHE_ENABLED_DOC = "Flag to determine if the classes compiled from the schema should be " +
+      "cached on disk. The cache is keyed by a hash of the content of the schemas and the schemas they include or " +
+      "import, the package, the xjc options, the versions " +
+      "of xjc and this plugin and the java version. When a matching entry exists the classes are loaded directly and code generation and compilation are skipped.";
+  static final String COMPILER_CACHE_PATH_DOC = "The absolute path of the directory used to store the compiled " +
+      "classes. Required when `" + COMPILER_CACHE_ENABLED_CONFIG + "` is enabled. This directory can be shared by " +
+      "multiple tasks on the same worker. The classes in it are loaded into the worker, so it is created so that only " +
+      "the user running the worker can access it, and a directory that is owned by another user or that other users " +
+      "can write to is rejected.";
+  static final String COMPILER_TYPE_DOC = "The java compiler used to compile the source generated by xjc. " +
+      ConfigUtils.enumDescription(CompilerType.class);
+  static final String MODEL_SOURCE_DOC = "Where the classes for the schema come from. " +
+      ConfigUtils.enumDescription(ModelSource.class);
+  static final String SCHEMA_SETS_DOC = "Names of additional sets of schemas. Each set is configured with `" +
+      SCHEMA_SET_PREFIX + "<name>" + SCHEMA_SET_PATH_SUFFIX + "`, the urls to the schemas, and `" + SCHEMA_SET_PREFIX +
+      "<name>" + SCHEMA_SET_PACKAGE_SUFFIX + "`, the java package for the set which defaults to `<package>.<name>`. " +
+      "Every set is compiled into the same JAXBContext and each document is converted with the schema of its root " +
+      "element, so one transformation can handle many types of documents. The schemas in `" + SCHEMA_PATH_CONFIG +
+      "` are the default set and can be left blank when sets are configured.";
+  public final List<URL> schemaUrls;
+  public final String xjcPackage;
+  public final boolean optionsStrictCheck;
+  public final boolean optionsAutomaticNameConflictResolution;
+  public final boolean compilerCacheEnabled;
+  public final File compilerCachePath;
+  public final CompilerType compilerType;
+  public final ModelSource modelSource;
+  /**
+   * The default set from {@link #SCHEMA_PATH_CONFIG} and {@link #PACKAGE_CONFIG} followed by the
+   * sets in {@link #SCHEMA_SETS_CONFIG}.
+   */
+  public final List<SchemaSet> schemaSets;
+
+  public XmlSchemaConfig(Map<?, ?> originals) {
+    this(config(), originals);
+  }
+
+  protected XmlSchemaConfig(ConfigDef definition, Map<?, ?> originals) {
+    super(schemaSetConfig(definition, originals), originals);
+    this.schemaUrls = ConfigUtils.urls(this, SCHEMA_PATH_CONFIG);
+    this.xjcPackage = getString(PACKAGE_CONFIG);
+    this.optionsStrictCheck = getBoolean(XJC_OPTIONS_STRICT_CHECK_CONFIG);
+    this.optionsAutomaticNameConflictResolution = getBoolean(XJC_OPTIONS_AUTOMATIC_NAME_CONFLICT_RESOLUTION_ENABLED_CONFIG);
+    this.compilerCacheEnabled = getBoolean(COMPILER_CACHE_ENABLED_CONFIG);
+    this.compilerCachePath = Strings.isNullOrEmpty(getString(COMPILER_CACHE_PATH_CONFIG)) ?
+        null : ConfigUtils.getAbsoluteFile(this, COMPILER_CACHE_PATH_CONFIG);
+    this.compilerType = ConfigUtils.getEnum(CompilerType.class, this, COMPILER_TYPE_CONFIG);
+    this.modelSource = ConfigUtils.getEnum(ModelSource.class, this, MODEL_SOURCE_CONFIG);
+    this.schemaSets = schemaSets();
+
+    for (SchemaSet schemaSet : this.schemaSets) {
+      if (schemaSet.urls.isEmpty() && ModelSource.COMPILE == this.modelSource) {
+        throw new ConfigException(
+            schemaSet.pathConfig,
+            schemaSet.urls,
+            String.format("Must be set unless '%s' is '%s'.", MODEL_SOURCE_CONFIG, ModelSource.PRECOMPILED)
+        );
+      }
+    }
+    if (this.compilerCacheEnabled && null == this.compilerCachePath) {
+      throw new ConfigException(
+          COMPILER_CACHE_PATH_CONFIG,
+          "",
+          String.format("Must be set when '%s' is enabled.", COMPILER_CACHE_ENABLED_CONFIG)
+      );
+    }
+  }
+
+  /**
+   * Method is used to define the settings of each set in {@link #SCHEMA_SETS_CONFIG}, in the same
+   * way the worker defines the settings of each transformation alias. Settings with the
+   * {@link #SCHEMA_SET_PREFIX} that do not belong to a configured set are rejected, so a misspelled
+   * name does not silently leave a set without schemas.
+   *
+   * @param definition settings of the transformation.
+   * @param originals settings to parse.
+   * @return copy of the definition with the settings of every configured set.
+   */
+  static ConfigDef schemaSetConfig(ConfigDef definition, Map<?, ?> originals) {
+    final ConfigDef result = new ConfigDef(definition);
+    final Object value = originals.get(SCHEMA_SETS_CONFIG);
+    final List<?> names = null == value ?
+        Collections.emptyList() :
+        (List<?>) ConfigDef.parseType(SCHEMA_SETS_CONFIG, value, ConfigDef.Type.LIST);
+    for (Object name : names) {
+      final String pathConfig = SCHEMA_SET_PREFIX + name + SCHEMA_SET_PATH_SUFFIX;
+      if (result.configKeys().containsKey(pathConfig)) {
+        throw new ConfigException(SCHEMA_SETS_CONFIG, value, "Each schema set must have a unique name.");
+      }
+      result.define(
+          ConfigKeyBuilder.of(pathConfig, ConfigDef.Type.LIST)
+              .documentation(String.format("Urls to the schemas of the `%s` schema set.", name))
+              .importance(ConfigDef.Importance.HIGH)
+              .defaultValue(Collections.emptyList())
+              .validator(new ValidUrl())
+              .build()
+      ).define(
+          ConfigKeyBuilder.of(SCHEMA_SET_PREFIX + name + SCHEMA_SET_PACKAGE_SUFFIX, ConfigDef.Type.STRING)
+              .documentation(String.format("The java package of the `%s` schema set. Defaults to `<package>.%s`.", name, name))
+              .importance(ConfigDef.Importance.LOW)
+              .defaultValue("")
+              .build()
+      );
+    }
+
+    for (Object key : originals.keySet()) {
+      final String name = key.toString();
+      if (name.startsWith(SCHEMA_SET_PREFIX) && !result.configKeys().containsKey(name)) {
+        throw new ConfigException(
+            name,
+            originals.get(key),
+            String.format(
+                "Does not belong to a schema set in '%s'. Expected '%s<name>%s' or '%s<name>%s' for one of %s.",
+                SCHEMA_SETS_CONFIG,
+                SCHEMA_SET_PREFIX,
+                SCHEMA_SET_PATH_SUFFIX,
+                SCHEMA_SET_PREFIX,
+                SCHEMA_SET_PACKAGE_SUFFIX,
+                names
+            )
+        );
+      }
+    }
+    return result;
+  }
+
+  List<SchemaSet> schemaSets() {
+    final List<String> names = getList(SCHEMA_SETS_CONFIG);
+    final List<SchemaSet> result = new ArrayList<>(names.size() + 1);
+    // The default set is left out when only named sets are configured.
+    if (!this.schemaUrls.isEmpty() || names.isEmpty()) {
+      result.add(new SchemaSet(null, SCHEMA_PATH_CONFIG, this.schemaUrls, this.xjcPackage));
+    }
+
+    final Set<String> packages = new HashSet<>();
+    for (SchemaSet schemaSet : result) {
+      packages.add(schemaSet.xjcPackage);
+    }
+    for (String name : names) {
+      final String pathConfig = SCHEMA_SET_PREFIX + name + SCHEMA_SET_PATH_SUFFIX;
+      final String packageConfig = SCHEMA_SET_PREFIX + name + SCHEMA_SET_PACKAGE_SUFFIX;
+
+      final List<URL> urls = ConfigUtils.urls(this, pathConfig);
+      final String xjcPackage = Strings.isNullOrEmpty(getString(packageConfig)) ?
+          this.xjcPackage + "." + name :
+          getString(packageConfig);
+      if (!packages.add(xjcPackage)) {
+        throw new ConfigException(packageConfig, xjcPackage, "Each schema set must use a different package.");
+      }
+      result.add(new SchemaSet(name, pathConfig, urls, xjcPackage));
+    }
+    return result;
+  }
+
+  /**
+   * Schemas that are generated into the same java package.
+   */
+  static class SchemaSet {
+    /**
+     * Name of the set, null for the default set.
+     */
+    final String name;
+    final String pathConfig;
+    final List<URL> urls;
+    final String xjcPackage;
+
+    SchemaSet(String name, String pathConfig, List<URL> urls, String xjcPackage) {
+      this.name = name;
+      this.pathConfig = pathConfig;
+      this.urls = urls;
+      this.xjcPackage = xjcPackage;
+    }
+  }
+
+  public static ConfigDef config() {
+    // The defaults of the xjc options are spelled out so defining the config does not load xjc,
+    // which is not used when the classes are precompiled.
+    return new ConfigDef()
+        .define(
+            ConfigKeyBuilder.of(SCHEMA_PATH_CONFIG, ConfigDef.Type.LIST)
+                .documentation(SCHEMA_PATH_DOC)
+                .importance(ConfigDef.Importance.HIGH)
+                .defaultValue(Collections.emptyList())
+                .validator(new ValidUrl())
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(SCHEMA_SETS_CONFIG, ConfigDef.Type.LIST)
+                .documentation(SCHEMA_SETS_DOC)
+                .importance(ConfigDef.Importance.MEDIUM)
+                .defaultValue(Collections.emptyList())
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(PACKAGE_CONFIG, ConfigDef.Type.STRING)
+                .documentation(PACKAGE_DOC)
+                .importance(ConfigDef.Importance.HIGH)
+                .defaultValue(XmlSchemaConfig.class.getPackage().getName() + ".model")
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(XJC_OPTIONS_STRICT_CHECK_CONFIG, ConfigDef.Type.BOOLEAN)
+                .documentation(XJC_OPTIONS_STRICT_CHECK_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(true)
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(XJC_OPTIONS_AUTOMATIC_NAME_CONFLICT_RESOLUTION_ENABLED_CONFIG, ConfigDef.Type.BOOLEAN)
+                .documentation(XJC_OPTIONS_AUTOMATIC_NAME_CONFLICT_RESOLUTION_ENABLED_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(false)
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(XJC_OPTIONS_VERBOSE_CONFIG, ConfigDef.Type.BOOLEAN)
+                .documentation(XJC_OPTIONS_VERBOSE_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(false)
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(COMPILER_CACHE_ENABLED_CONFIG, ConfigDef.Type.BOOLEAN)
+                .documentation(COMPILER_CACHE_ENABLED_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(false)
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(COMPILER_CACHE_PATH_CONFIG, ConfigDef.Type.STRING)
+                .documentation(COMPILER_CACHE_PATH_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue("")
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(COMPILER_TYPE_CONFIG, ConfigDef.Type.STRING)
+                .documentation(COMPILER_TYPE_DOC)
+                .importance(ConfigDef.Importance.LOW)
+                .defaultValue(CompilerType.AUTO.name())
+                .validator(ValidEnum.of(CompilerType.class))
+                .recommender(Recommenders.enumValues(CompilerType.class))
+                .build()
+        ).define(
+            ConfigKeyBuilder.of(MODEL_SOURCE_CONFIG, ConfigDef.Type.STRING)
+                .documentation(MODEL_SOURCE_DOC)
+                .importance(ConfigDef.Importance.MEDIUM)
+                .defaultValue(ModelSource.COMPILE.name())
+                .validator(ValidEnum.of(ModelSource.class))
+                .recommender(Recommenders.enumValues(ModelSource.class))
+                .build()
+        );
+  }
+
+  public enum ModelSource {
+    @Description("Generate and compile the classes from the schemas in `" + SCHEMA_PATH_CONFIG + "` when the " +
+        "transformation is configured.")
+    COMPILE,
+    @Description("Load the classes in the package of each schema set from a jar created ahead of time with " +
+        "`ModelJarGenerator`. The jar must be on the plugin path next to this plugin. Only the JAXBContext is " +
+        "created when the transformation is configured.")
+    PRECOMPILED
+  }
+
+  public enum CompilerType {
+    @Description("Use the compiler from the JDK when it is available, otherwise use the Eclipse compiler if it was " +
+        "added to the plugin directory.")
+    AUTO,
+    @Description("Use the compiler from the JDK. This requires the worker to run on a JDK rather than a JRE.")
+    JDK,
+    @Description("Use the Eclipse compiler. It is not shipped with this plugin, so the ecj 4.6 jar must be added to " +
+        "the plugin directory, and it only works on a Java 8 JRE as it can not read the system classes of Java 9 and " +
+        "later. On a later JRE use `" + MODEL_SOURCE_CONFIG + "` = `PRECOMPILED`.")
+    ECLIPSE
+  }
+}
@@ -15,30 +15,80 @@
  */
 package com.github.jcustenborder.kafka.connect.transform.xml;
 
+import com.github.jcustenborder.kafka.connect.xml.Connectable;
+import com.github.luben.zstd.ZstdOutputStream;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.io.Files;
-import org.apache.kafka.connect.connector.ConnectRecord;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.config.ConfigException;
+import org.apache.kafka.common.metrics.KafkaMetric;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.DataException;
 import org.apache.kafka.connect.sink.SinkRecord;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.xerial.snappy.SnappyOutputStream;
 
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBIntrospector;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.net.MalformedURLException;
-import java.util.Date;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class FromXmlTest {
+  static final File RESOURCES = new File("src/test/resources/com/github/jcustenborder/kafka/connect/transform/xml");
+  static final File BOOKS_XSD = new File(RESOURCES, "books.xsd");
+  static final File BOOKS_XML = new File(RESOURCES, "books.xml");
+  static final File LIBRARY_XSD = new File(RESOURCES, "library.xsd");
+  static final File ORDERS_XSD = new File(RESOURCES, "orders.xsd");
+  static final File ORDERS_XML = new File(RESOURCES, "orders.xml");
+  static final File SHAPES_XSD = new File(RESOURCES, "shapes.xsd");
+  static final File SHAPES_XML = new File(RESOURCES, "shapes.xml");
 
-  FromXml.Value transform;
+  FromXml.Value<SinkRecord> transform;
+  byte[] books;
 
   @BeforeEach
-  public void before() throws MalformedURLException {
-    File file = new File("src/test/resources/com/github/jcustenborder/kafka/connect/transform/xml/books.xsd");
-    this.transform = new FromXml.Value();
-    this.transform.configure(
-        ImmutableMap.of(FromXmlConfig.SCHEMA_PATH_CONFIG, file.getAbsoluteFile().toURL().toString())
-    );
+  public void before() throws IOException {
+    this.books = Files.toByteArray(BOOKS_XML);
+    this.transform = new FromXml.Value<>();
+    this.transform.configure(settings(ImmutableMap.of()));
   }
 
   @AfterEach
@@ -46,20 +96,905 @@ public class FromXmlTest {
     this.transform.close();
   }
 
+  static String url(File file) {
+    return file.getAbsoluteFile().toURI().toString();
+  }
+
+  /**
+   * @return settings for books.xsd with the overrides applied.
+   */
+  static Map<String, String> settings(Map<String, String> overrides) {
+    final Map<String, String> result = new LinkedHashMap<>();
+    result.put(FromXmlConfig.SCHEMA_PATH_CONFIG, url(BOOKS_XSD));
+    result.putAll(overrides);
+    return result;
+  }
+
+  interface TransformTest {
+    void run(FromXml.Value<SinkRecord> transform) throws Exception;
+  }
+
+  /**
+   * Configures a transformation with the overrides, runs the test against it and closes it.
+   */
+  static void withTransform(Map<String, String> overrides, TransformTest test) throws Exception {
+    final FromXml.Value<SinkRecord> transform = new FromXml.Value<>();
+    transform.configure(settings(overrides));
+    try {
+      test.run(transform);
+    } finally {
+      transform.close();
+    }
+  }
+
+  static SinkRecord record(Object value) {
+    return record(value, 1L);
+  }
+
+  static SinkRecord record(Object value, long offset) {
+    final Schema schema = value instanceof String ? Schema.STRING_SCHEMA : Schema.BYTES_SCHEMA;
+    return new SinkRecord("test", 1, null, null, schema, value, offset);
+  }
+
+  /**
+   * Checks the struct that was read from books.xml.
+   */
+  static void assertBooks(Struct struct) {
+    final List<Struct> books = struct.getArray("book");
+    assertEquals(2, books.size());
+    assertBook(books.get(0), "bk001", "Writer", "The First Book", 44.95F);
+    assertBook(books.get(1), "bk002", "Poet", "The Poet's First Poem", 24.95F);
+  }
+
+  static void assertBook(Struct book, String id, String author, String title, float price) {
+    assertEquals(id, book.getString("id"));
+    assertEquals(author, book.getString("author"));
+    assertEquals(title, book.getString("title"));
+    assertEquals(price, (float) book.getFloat32("price"));
+  }
+
+  Struct expected() {
+    return (Struct) this.transform.apply(record(this.books)).value();
+  }
+
+  @Test
+  public void apply() {
+    final SinkRecord record = this.transform.apply(record(this.books));
+    assertEquals(Schema.Type.STRUCT, record.valueSchema().type());
+    assertBooks((Struct) record.value());
+  }
+
+  @Test
+  public void applyDeclaredEncoding() {
+    final String input = new String(this.books, Charsets.UTF_8)
+        .replace("<?xml version=\"1.0\"?>", "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>")
+        .replace("<author>Writer</author>", "<author>Wr\u00efter</author>");
+    final Struct struct = (Struct) this.transform.apply(record(input.getBytes(Charsets.ISO_8859_1))).value();
+    final List<Struct> books = struct.getArray("book");
+    assertEquals("Wr\u00efter", books.get(0).getString("author"));
+  }
+
+  @Test
+  public void staxConversionMode() throws Exception {
+    final Struct expected = expected();
+    withTransform(ImmutableMap.of(FromXmlConfig.CONVERSION_MODE_CONFIG, FromXmlConfig.ConversionMode.STAX.name()), stax -> {
+      assertNotNull(stax.compiled.structReader);
+      assertNull(stax.compiled.borrow(), "The STAX mode should not use an unmarshaller.");
+      final SinkRecord actual = stax.apply(record(this.books));
+      assertBooks((Struct) actual.value());
+      assertEquals(expected.schema(), actual.valueSchema());
+      assertEquals(expected, actual.value());
+    });
+  }
+
+  @Test
+  public void schemaIdentity() throws Exception {
+    final Schema expected = this.transform.apply(record(this.books, 1L)).valueSchema();
+    assertNotNull(expected);
+    // Each conversion mode builds the struct differently but returns the schema of the root type.
+    for (Map<String, String> overrides : Arrays.asList(
+        ImmutableMap.<String, String>of(),
+        ImmutableMap.of(FromXmlConfig.CONVERSION_MODE_CONFIG, FromXmlConfig.ConversionMode.STAX.name()),
+        ImmutableMap.of(FromXmlConfig.LAZY_STRUCT_ENABLED_CONFIG, "true"),
+        ImmutableMap.of(FromXmlConfig.REFLECTION_CONVERSION_ENABLED_CONFIG, "true")
+    )) {
+      withTransform(overrides, transform -> {
+        for (long offset = 1; offset <= 2; offset++) {
+          assertSame(
+              expected,
+              transform.apply(record(this.books, offset)).valueSchema(),
+              "Every record should carry the same schema instance. " + overrides
+          );
+        }
+      });
+    }
+  }
+
+  @Test
+  public void metrics() throws Exception {
+    assertNull(this.transform.metrics, "Metrics should be disabled by default.");
+    withTransform(ImmutableMap.of(FromXmlConfig.METRICS_ENABLED_CONFIG, "true"), measured -> {
+      measured.apply(record(this.books));
+      assertThrows(DataException.class, () -> measured.apply(record("<books>")));
+
+      final FromXmlMetrics metrics = measured.metrics;
+      assertEquals(2D, metric(metrics, "record-total", ImmutableMap.of()));
+      assertEquals(this.books.length + 7D, metric(metrics, "bytes-in-total", ImmutableMap.of()));
+      assertEquals(1D, metric(metrics, "failure-total", ImmutableMap.of()));
+      assertEquals(1D, metric(metrics, "failure-total", ImmutableMap.of("exception", "javax.xml.bind.UnmarshalException")));
+      assertTrue(metric(metrics, "parse-time-max", ImmutableMap.of()) > 0D);
+      assertTrue(metric(metrics, "to-struct-time-max", ImmutableMap.of()) > 0D);
+
+      // A second task of the same connector reports to the same metrics.
+      withTransform(ImmutableMap.of(FromXmlConfig.METRICS_ENABLED_CONFIG, "true"), task -> {
+        assertSame(metrics, task.metrics);
+        task.apply(record(this.books));
+        assertEquals(3D, metric(metrics, "record-total", ImmutableMap.of()));
+      });
+      assertEquals(3D, metric(metrics, "record-total", ImmutableMap.of()), "metrics should outlive the second task.");
+    });
+  }
+
+  @Test
+  public void metricsPercentiles() {
+    final FromXmlMetrics metrics = FromXmlMetrics.acquire("percentiles", false);
+    try {
+      for (int i = 0; i < 100; i++) {
+        // Between 10 microseconds and 1 millisecond.
+        metrics.parseTime(0L, 10000L * (i + 1));
+      }
+      final double p50 = metric(metrics, "parse-time-p50", ImmutableMap.of());
+      final double p99 = metric(metrics, "parse-time-p99", ImmutableMap.of());
+      assertTrue(p50 > 0.475D && p50 <= 0.5D, "p50 should be about 0.5 ms but was " + p50);
+      assertTrue(p99 > 0.95D && p99 <= 1D, "p99 should be about 1 ms but was " + p99);
+    } finally {
+      metrics.close();
+    }
+  }
+
+  static double metric(FromXmlMetrics metrics, String name, Map<String, String> extraTags) {
+    final MetricName metricName = metrics.metricName(name, "", extraTags);
+    final KafkaMetric metric = metrics.metrics.metric(metricName);
+    assertNotNull(metric, name + " was not registered.");
+    return (double) metric.metricValue();
+  }
+
+  @Test
+  public void projection() throws Exception {
+    withTransform(ImmutableMap.of(FromXmlConfig.PROJECTION_PATHS_CONFIG, "book/title,book/@id"), projected -> {
+      final SinkRecord record = projected.apply(record(this.books));
+      final Struct struct = (Struct) record.value();
+      assertEquals(1, record.valueSchema().fields().size());
+      final List<Struct> books = struct.getArray("book");
+      assertEquals(2, books.size());
+      assertEquals(2, books.get(0).schema().fields().size());
+      assertEquals("bk001", books.get(0).getString("id"));
+      assertEquals("The First Book", books.get(0).getString("title"));
+      assertNull(books.get(0).schema().field("author"));
+    });
+  }
+
+  @Test
+  public void projectionUnknownPath() {
+    final FromXml.Value<SinkRecord> projected = new FromXml.Value<>();
+    try {
+      assertThrows(ConfigException.class, () -> projected.configure(
+          settings(ImmutableMap.of(FromXmlConfig.PROJECTION_PATHS_CONFIG, "book/isbn"))
+      ));
+    } finally {
+      projected.close();
+    }
+  }
+
+  @Test
+  public void projectionSchemaSets() throws Exception {
+    // Both roots are named books. book/title is only in books.xsd and @branch only in library.xsd.
+    withTransform(librarySchemaSet(ImmutableMap.of(FromXmlConfig.PROJECTION_PATHS_CONFIG, "book/title,@branch")), projected -> {
+      final List<SinkRecord> output = projected.apply(ImmutableList.of(record(this.books, 1L), record(LIBRARY, 2L)));
+      final Struct bookStruct = (Struct) output.get(0).value();
+      assertEquals(1, bookStruct.schema().fields().size());
+      final List<Struct> books = bookStruct.getArray("book");
+      assertEquals(1, books.get(0).schema().fields().size());
+      assertEquals("The First Book", books.get(0).getString("title"));
+      final Struct libraryStruct = (Struct) output.get(1).value();
+      assertEquals(1, libraryStruct.schema().fields().size());
+      assertEquals("north", libraryStruct.getString("branch"));
+    });
+
+    // Roots that none of the paths match are read in full.
+    withTransform(librarySchemaSet(ImmutableMap.of(FromXmlConfig.PROJECTION_PATHS_CONFIG, "book/title")), projected -> {
+      final Struct libraryStruct = (Struct) projected.apply(record(LIBRARY)).value();
+      assertEquals("north", libraryStruct.getString("branch"));
+      assertEquals(ImmutableList.of("A", "B"), libraryStruct.getArray("shelf"));
+    });
+
+    final FromXml.Value<SinkRecord> unknown = new FromXml.Value<>();
+    try {
+      assertThrows(ConfigException.class, () -> unknown.configure(
+          settings(librarySchemaSet(ImmutableMap.of(FromXmlConfig.PROJECTION_PATHS_CONFIG, "book/title,shelf/isbn")))
+      ));
+    } finally {
+      unknown.close();
+    }
+  }
+
+  @Test
+  public void split() throws Exception {
+    final List<Struct> expected = expected().getArray("book");
+    withTransform(ImmutableMap.of(FromXmlConfig.SPLIT_ELEMENT_PATH_CONFIG, "book"), splitter -> {
+      final List<SinkRecord> records = ImmutableList.copyOf(splitter.split(record(this.books)));
+      assertEquals(2, records.size());
+      for (int i = 0; i < records.size(); i++) {
+        assertEquals(expected.get(i), records.get(i).value());
+        assertSame(expected.get(i).schema(), records.get(i).valueSchema());
+      }
+      assertEquals("Poet", ((Struct) records.get(1).value()).getString("author"));
+      final List<Struct> structs = ImmutableList.copyOf(splitter.split(new ByteArrayInputStream(this.books)));
+      assertEquals(expected, structs);
+    });
+  }
+
+  @Test
+  public void splitClosesInputOnFailure() throws Exception {
+    final String books = new String(this.books, Charsets.UTF_8);
+    final int secondBook = books.indexOf("<book id=\"bk002\"");
+    final List<String> inputs = Arrays.asList(
+        books.substring(0, secondBook) + "<book id=\"bk002\"><author>Poet</x:books>",
+        books.substring(0, secondBook) + books.substring(secondBook).replace("<price>24.95</price>", "<price>free</price>")
+    );
+    withTransform(ImmutableMap.of(FromXmlConfig.SPLIT_ELEMENT_PATH_CONFIG, "book"), splitter -> {
+      for (String input : inputs) {
+        final AtomicBoolean inputClosed = new AtomicBoolean();
+        final AtomicBoolean readerClosed = new AtomicBoolean();
+        final InputStream inputStream = new ByteArrayInputStream(input.getBytes(Charsets.UTF_8)) {
+          @Override
+          public void close() {
+            inputClosed.set(true);
+          }
+        };
+        final XMLStreamReader reader = new StreamReaderDelegate(splitter.inputFactory.createXMLStreamReader(inputStream)) {
+          @Override
+          public String getElementText() throws XMLStreamException {
+            final String text = super.getElementText();
+            if ("free".equals(text)) {
+              throw new DataException("Price is not a number.");
+            }
+            return text;
+          }
+
+          @Override
+          public void close() throws XMLStreamException {
+            readerClosed.set(true);
+            super.close();
+          }
+        };
+        final Iterator<Struct> structs = splitter.compiled.splitter.split(reader, inputStream);
+        assertEquals("Writer", structs.next().getString("author"));
+        assertFalse(readerClosed.get());
+        assertThrows(DataException.class, structs::next);
+        assertTrue(readerClosed.get(), "The reader should be closed when the document could not be read.");
+        assertTrue(inputClosed.get(), "The input should be closed when the document could not be read.");
+      }
+    });
+  }
+
+  @Test
+  public void lazyStruct() throws Exception {
+    final Struct expected = expected();
+    withTransform(ImmutableMap.of(FromXmlConfig.LAZY_STRUCT_ENABLED_CONFIG, "true"), lazy -> {
+      final LazyStruct struct = (LazyStruct) lazy.apply(record(this.books)).value();
+      assertNotNull(struct.source, "struct should not be converted until it is read.");
+      final List<Struct> books = struct.getArray("book");
+      assertNull(struct.source);
+      assertNotNull(((LazyStruct) books.get(1)).source, "nested structs should not be converted until they are read.");
+      assertEquals("Poet", books.get(1).getString("author"));
+      // Struct.equals() requires the same class so the lazy struct has to be the receiver.
+      assertTrue(struct.equals(expected), "lazy struct should match the converted struct.");
+      struct.validate();
+    });
+  }
+
+  @Test
+  public void lazyStructConcurrentReads() throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      withTransform(ImmutableMap.of(FromXmlConfig.LAZY_STRUCT_ENABLED_CONFIG, "true"), lazy -> {
+        for (int i = 0; i < 50; i++) {
+          final Struct struct = (Struct) lazy.apply(record(this.books)).value();
+          final List<Future<Integer>> futures = new ArrayList<>();
+          for (int thread = 0; thread < 4; thread++) {
+            futures.add(executor.submit(() -> struct.getArray("book").size()));
+          }
+          for (Future<Integer> future : futures) {
+            assertEquals(2, (int) future.get());
+          }
+        }
+      });
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  /**
+   * The layers of shapes.xml have a choice, which the reflective conversion does not bind.
+   */
+  @Test
+  public void lazyStructIncompleteBinding() throws Exception {
+    final byte[] drawing = Files.toByteArray(SHAPES_XML);
+    final byte[] layer = "<shp:layer xmlns:shp=\"urn:shapes\"><name>top</name><circle>1</circle></shp:layer>"
+        .getBytes(Charsets.UTF_8);
+    final Map<String, String> shapes = ImmutableMap.of(FromXmlConfig.SCHEMA_PATH_CONFIG, url(SHAPES_XSD));
+    final List<Object> expected = new ArrayList<>();
+    withTransform(shapes, generated -> {
+      expected.add(generated.apply(record(drawing)).value());
+      expected.add(generated.apply(record(layer)).value());
+    });
+    withTransform(ImmutableMap.<String, String>builder()
+        .putAll(shapes)
+        .put(FromXmlConfig.LAZY_STRUCT_ENABLED_CONFIG, "true")
+        .build(), lazy -> {
+      final Struct drawingStruct = (Struct) lazy.apply(record(drawing)).value();
+      assertTrue(drawingStruct instanceof LazyStruct);
+      assertTrue(drawingStruct.equals(expected.get(0)), "lazy struct should match the generated struct.");
+      final Struct layerStruct = drawingStruct.<Struct>getArray("layer").get(0);
+      assertFalse(layerStruct instanceof LazyStruct, "nested incomplete bindings should use the generated toStruct().");
+      for (org.apache.kafka.connect.data.Field field : layerStruct.schema().fields()) {
+        assertNotNull(layerStruct.get(field), field.name() + " should be converted.");
+      }
+
+      final Struct layerRoot = (Struct) lazy.apply(record(layer)).value();
+      assertFalse(layerRoot instanceof LazyStruct, "incomplete root bindings should use the generated toStruct().");
+      assertEquals(expected.get(1), layerRoot);
+    });
+  }
+
+  @Test
+  public void reflectionConversion() throws Exception {
+    final byte[] input = Files.toByteArray(ORDERS_XML);
+    final Map<String, String> orders = ImmutableMap.of(FromXmlConfig.SCHEMA_PATH_CONFIG, url(ORDERS_XSD));
+    final FromXml.Value<SinkRecord> generated = new FromXml.Value<>();
+    generated.configure(settings(orders));
+    try {
+      final Connectable order = (Connectable) JAXBIntrospector.getValue(
+          generated.compiled.context.createUnmarshaller().unmarshal(new ByteArrayInputStream(input))
+      );
+      final Struct expected = order.toStruct();
+      final StructBinding binding = generated.compiled.bindings.get(order.getClass());
+      assertNotNull(binding, "order should be a root binding.");
+      // Enums, decimals, dates and nested structs should be converted like the generated code does.
+      assertEquals(expected, binding.toStruct(order));
+      assertEquals("new-order", expected.getString("status"));
+      assertEquals(expected, generated.apply(record(input)).value());
+
+      withTransform(ImmutableMap.<String, String>builder()
+          .putAll(orders)
+          .put(FromXmlConfig.REFLECTION_CONVERSION_ENABLED_CONFIG, "true")
+          .build(), reflective -> {
+        final SinkRecord actual = reflective.apply(record(input));
+        assertSame(binding.schema, actual.valueSchema());
+        assertEquals(expected, actual.value());
+      });
+    } finally {
+      generated.close();
+    }
+  }
+
+  @Test
+  public void applyBatch() {
+    final Struct expected = expected();
+    final List<SinkRecord> records = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      records.add(record(i % 2 == 0 ? this.books : new String(this.books, Charsets.UTF_8), i));
+    }
+    final List<SinkRecord> actual = this.transform.apply(records);
+    assertEquals(records.size(), actual.size());
+    for (int i = 0; i < actual.size(); i++) {
+      assertEquals(i, (long) actual.get(i).kafkaOffset());
+      assertEquals(expected, actual.get(i).value());
+    }
+    assertTrue(this.transform.apply(ImmutableList.of()).isEmpty());
+  }
+
+  @Test
+  public void applyBatchParallel() throws Exception {
+    final Struct expected = expected();
+    withTransform(
+        ImmutableMap.of(
+            FromXmlConfig.BATCH_PARALLELISM_CONFIG, "4",
+            FromXmlConfig.BATCH_PARALLEL_MIN_RECORDS_CONFIG, "1"
+        ),
+        parallel -> {
+          assertEquals(4, parallel.executor.getParallelism());
+          final List<SinkRecord> records = new ArrayList<>();
+          for (int i = 0; i < 250; i++) {
+            records.add(record(this.books, i));
+          }
+          final List<SinkRecord> actual = parallel.apply(records);
+          assertEquals(records.size(), actual.size());
+          for (int i = 0; i < actual.size(); i++) {
+            assertEquals(i, (long) actual.get(i).kafkaOffset(), "records should be returned in input order.");
+            assertEquals(expected, actual.get(i).value());
+          }
+
+          records.set(100, record("<books>", 100));
+          assertThrows(DataException.class, () -> parallel.apply(records));
+        }
+    );
+  }
+
+  @Test
+  public void externalEntitiesNotResolved() {
+    final String input = new String(this.books, Charsets.UTF_8)
+        .replace("<?xml version=\"1.0\"?>", "<?xml version=\"1.0\"?>\n<!DOCTYPE books [<!ENTITY secret SYSTEM \"file:///etc/passwd\">]>")
+        .replace("<author>Writer</author>", "<author>&secret;</author>");
+    assertThrows(DataException.class, () -> this.transform.apply(record(input)));
+  }
+
+  @Test
+  public void validation() throws Exception {
+    final String valid = new String(this.books, Charsets.UTF_8);
+    final String invalid = valid.replace("<genre>Fiction</genre>", "");
+
+    for (FromXmlConfig.ConversionMode conversionMode : FromXmlConfig.ConversionMode.values()) {
+      withTransform(
+          ImmutableMap.of(
+              FromXmlConfig.CONVERSION_MODE_CONFIG, conversionMode.name(),
+              FromXmlConfig.VALIDATION_ENABLED_CONFIG, "true",
+              FromXmlConfig.VALIDATION_SAMPLE_RATE_CONFIG, "2"
+          ),
+          validating -> {
+            validating.apply(record(valid, 1L));
+            // The second record is not sampled.
+            validating.apply(record(invalid, 2L));
+            final DataException exception = assertThrows(DataException.class, () -> validating.apply(
+                record(invalid.getBytes(Charsets.UTF_8), 3L)
+            ), conversionMode.name());
+            assertTrue(exception.getMessage().startsWith("Document is not valid"), exception.getMessage());
+          }
+      );
+    }
+
+    // Elements that are skipped by the projection are still validated.
+    withTransform(
+        ImmutableMap.of(
+            FromXmlConfig.PROJECTION_PATHS_CONFIG, "book/title",
+            FromXmlConfig.VALIDATION_ENABLED_CONFIG, "true"
+        ),
+        validating -> {
+          validating.apply(record(valid));
+          assertThrows(DataException.class, () -> validating.apply(record(invalid)));
+        }
+    );
+  }
+
+  @Test
+  public void errorMode() throws Exception {
+    final String input = "<?xml version=\"1.0\"?>\n<x:books xmlns:x=\"urn:books\">\n  <book id=\"bk001\">\n</x:books>";
+    final SinkRecord inputRecord = record(input, 1234L);
+    assertThrows(DataException.class, () -> this.transform.apply(inputRecord));
+
+    final Map<FromXmlConfig.ErrorMode, SinkRecord> results = new HashMap<>();
+    for (FromXmlConfig.ErrorMode errorMode : FromXmlConfig.ErrorMode.values()) {
+      if (FromXmlConfig.ErrorMode.FAIL == errorMode) {
+        continue;
+      }
+      withTransform(ImmutableMap.of(FromXmlConfig.ERROR_MODE_CONFIG, errorMode.name()), transform -> {
+        results.put(errorMode, transform.apply(inputRecord));
+        final int expectedSize = FromXmlConfig.ErrorMode.SKIP == errorMode ? 0 : 2;
+        assertEquals(expectedSize, transform.apply(ImmutableList.of(inputRecord, inputRecord)).size());
+      });
+    }
+
+    assertNull(results.get(FromXmlConfig.ErrorMode.SKIP));
+    assertEquals(inputRecord, results.get(FromXmlConfig.ErrorMode.PASSTHROUGH));
+    final Struct error = (Struct) results.get(FromXmlConfig.ErrorMode.ERROR_STRUCT).value();
+    assertEquals(ErrorStruct.SCHEMA, error.schema());
+    assertEquals("test", error.getString("topic"));
+    assertEquals(1, (int) error.getInt32("partition"));
+    assertEquals(1234L, (long) error.getInt64("offset"));
+    assertEquals(4, (int) error.getInt32("line"));
+    assertNotNull(error.getInt32("column"));
+    assertNotNull(error.getString("message"));
+  }
+
+  @Test
+  public void compileAsync() throws Exception {
+    withTransform(ImmutableMap.of(FromXmlConfig.COMPILE_ASYNC_ENABLED_CONFIG, "true"), async -> {
+      assertNotNull(async.compilation, "configure() should return before the schema is compiled.");
+      assertBooks((Struct) async.apply(record(this.books)).value());
+      assertNull(async.compilation, "The first record should wait for the compilation.");
+    });
+
+    withTransform(
+        ImmutableMap.of(
+            FromXmlConfig.SCHEMA_PATH_CONFIG, url(new File(RESOURCES, "missing.xsd")),
+            FromXmlConfig.COMPILE_ASYNC_ENABLED_CONFIG, "true"
+        ),
+        missing -> assertThrows(RuntimeException.class, () -> missing.apply(record(this.books)))
+    );
+  }
+
+  @Test
+  public void schemaReload() throws Exception {
+    final File tempDirectory = Files.createTempDir();
+    final File schemaFile = new File(tempDirectory, "books.xsd");
+    Files.copy(BOOKS_XSD, schemaFile);
+    try {
+      withTransform(
+          ImmutableMap.of(
+              FromXmlConfig.SCHEMA_PATH_CONFIG, url(schemaFile),
+              FromXmlConfig.SCHEMA_RELOAD_INTERVAL_MS_CONFIG, "100"
+          ),
+          reloading -> {
+            final CompiledSchema original = reloading.compiled;
+            assertNull(reloading.apply(record(this.books)).valueSchema().field("book").schema().valueSchema().field("isbn"));
+            Thread.sleep(300);
+            reloading.apply(record(this.books));
+            assertSame(original, reloading.compiled, "Schema should not be reloaded if it did not change.");
+
+            Files.write(
+                Files.toString(schemaFile, Charsets.UTF_8).replace(
+                    "<xsd:element name=\"review\"   type=\"xsd:string\"/>",
+                    "<xsd:element name=\"review\"   type=\"xsd:string\"/>\n<xsd:element name=\"isbn\" type=\"xsd:string\" minOccurs=\"0\"/>"
+                ),
+                schemaFile,
+                Charsets.UTF_8
+            );
+            final long deadline = System.currentTimeMillis() + 60000L;
+            SinkRecord actual = reloading.apply(record(this.books));
+            while (reloading.compiled == original && System.currentTimeMillis() < deadline) {
+              Thread.sleep(100);
+              actual = reloading.apply(record(this.books));
+            }
+            final Schema bookSchema = actual.valueSchema().field("book").schema().valueSchema();
+            assertNotNull(bookSchema.field("isbn"), "Reloaded schema should have the new element.");
+          }
+      );
+    } finally {
+      MoreFiles.deleteRecursively(tempDirectory.toPath(), RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+  }
+
+  @Test
+  public void schemaSwapWhileInUse() throws Exception {
+    withTransform(ImmutableMap.of(), swapping -> {
+      final CompiledSchema original = swapping.acquire();
+      final CompiledSchema next = CompiledSchema.compile(swapping.config, swapping.inputFactory);
+      try {
+        swapping.pending.set(next);
+        assertBooks((Struct) swapping.apply(record(this.books)).value());
+        assertSame(next, swapping.compiled);
+        assertFalse(original.unmarshallers.closed, "A schema should stay open while it is in use.");
+        assertNotNull(swapping.processBytes(original, record(this.books), this.books, original.borrow()));
+      } finally {
+        original.close();
+      }
+      assertTrue(original.unmarshallers.closed, "A schema should be closed once the last reference is released.");
+      assertFalse(original.retain());
+    });
+  }
+
+  @Test
+  public void jdkParserBackend() throws Exception {
+    final Struct expected = expected();
+    withTransform(ImmutableMap.of(FromXmlConfig.PARSER_BACKEND_CONFIG, FromXmlConfig.ParserBackend.JDK.name()), jdk -> {
+      assertEquals(
+          XMLInputFactories.jdkFactory().getClass(),
+          jdk.inputFactory.getClass(),
+          "The built in parser should be used."
+      );
+      assertEquals(expected, jdk.apply(record(this.books)).value());
+    });
+  }
+
+  @Test
+  public void applyConcurrently() throws Exception {
+    final Struct expected = expected();
+    final ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<SinkRecord>> futures = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        futures.add(executorService.submit(() -> this.transform.apply(record(this.books))));
+      }
+      for (Future<SinkRecord> future : futures) {
+        assertEquals(expected, future.get().value());
+      }
+    } finally {
+      executorService.shutdown();
+    }
+    final ObjectPool<?> unmarshallers = this.transform.compiled.unmarshallers;
+    assertTrue(unmarshallers.idleCount.get() >= 1, "Unmarshallers should be returned to the pool.");
+    assertTrue(unmarshallers.idleCount.get() <= unmarshallers.maximumIdle, "The pool should not grow past its size.");
+  }
+
+  @Test
+  public void eclipseCompiler() throws Exception {
+    // Release the shared context so the schema is compiled with the eclipse compiler.
+    this.transform.close();
+    final Map<String, String> overrides = ImmutableMap.of(
+        FromXmlConfig.COMPILER_TYPE_CONFIG, FromXmlConfig.CompilerType.ECLIPSE.name()
+    );
+    if (XSDCompiler.eclipseCompilerSupported()) {
+      withTransform(overrides, eclipse -> assertBooks((Struct) eclipse.apply(record(this.books)).value()));
+    } else {
+      final FromXml.Value<SinkRecord> eclipse = new FromXml.Value<>();
+      try {
+        final ConfigException exception = assertThrows(ConfigException.class, () -> eclipse.configure(settings(overrides)));
+        assertTrue(exception.getMessage().contains(FromXmlConfig.COMPILER_TYPE_CONFIG), exception.getMessage());
+      } finally {
+        eclipse.close();
+      }
+    }
+  }
+
+  @Test
+  public void inMemoryCompilation() {
+    assertTrue(
+        this.transform.compiled.registration.classLoader() instanceof ByteArrayClassLoader,
+        "Generated classes should be loaded from memory."
+    );
+  }
+
+  @Test
+  public void sharedContext() {
+    final FromXml.Key<SinkRecord> other = new FromXml.Key<>();
+    other.configure(settings(ImmutableMap.of()));
+    final String key = other.compiled.key();
+    try {
+      assertSame(this.transform.compiled.context, other.compiled.context, "Transforms with the same schema should share a context.");
+      assertEquals(2, JAXBContextRegistry.ENTRIES.get(key).references);
+    } finally {
+      other.close();
+    }
+    assertEquals(1, JAXBContextRegistry.ENTRIES.get(key).references);
+    this.transform.close();
+    assertFalse(JAXBContextRegistry.ENTRIES.containsKey(key));
+  }
+
   @Test
-  public void apply() throws IOException {
-    final byte[] input = Files.toByteArray(new File("src/test/resources/com/github/jcustenborder/kafka/connect/transform/xml/books.xml"));
-    final ConnectRecord inputRecord = new SinkRecord(
-        "test",
-        1,
-        null,
-        null,
-        org.apache.kafka.connect.data.Schema.BYTES_SCHEMA,
-        input,
-        new Date().getTime()
+  public void compilerCache() throws Exception {
+    // Release the shared context so the schema is compiled through the cache.
+    this.transform.close();
+    final File cachePath = Files.createTempDir();
+    final Map<String, String> overrides = ImmutableMap.of(
+        FromXmlConfig.COMPILER_CACHE_ENABLED_CONFIG, "true",
+        FromXmlConfig.COMPILER_CACHE_PATH_CONFIG, cachePath.getAbsolutePath()
     );
+    final String cacheKey = new XSDCompiler(new FromXmlConfig(settings(overrides))).cacheKey();
+    final File cacheDirectory = new File(cachePath, cacheKey);
 
-    ConnectRecord record = this.transform.apply(inputRecord);
+    try {
+      for (int i = 0; i < 2; i++) {
+        final long compilations = XSDCompiler.COMPILATIONS.get();
+        withTransform(overrides, cached -> {
+          assertTrue(new File(cacheDirectory, XSDCompiler.CACHE_COMPLETE_MARKER).isFile(), "cache entry should exist.");
+          assertBooks((Struct) cached.apply(record(this.books)).value());
+        });
+        assertEquals(
+            0 == i ? compilations + 1 : compilations,
+            XSDCompiler.COMPILATIONS.get(),
+            0 == i ? "The first configure should compile the schema." : "The second configure should load the cache entry."
+        );
+      }
+      assertEquals(1, cachePath.listFiles().length, "Only the published cache entry should remain.");
+
+      // A cache entry that other users could have written must not be loaded.
+      java.nio.file.Files.setPosixFilePermissions(cacheDirectory.toPath(), PosixFilePermissions.fromString("rwxrwxrwx"));
+      assertThrows(ConfigException.class, () -> withTransform(overrides, cached -> { }));
+    } finally {
+      MoreFiles.deleteRecursively(cachePath.toPath(), RecursiveDeleteOption.ALLOW_INSECURE);
+    }
   }
 
+  @Test
+  public void compilerCachePath() throws Exception {
+    assertThrows(ConfigException.class, () -> new FromXmlConfig(
+        settings(ImmutableMap.of(FromXmlConfig.COMPILER_CACHE_ENABLED_CONFIG, "true"))
+    ), "The cache path should be required when the cache is enabled.");
+
+    final File tempPath = Files.createTempDir();
+    try {
+      final File cachePath = new File(tempPath, "cache");
+      XSDCompiler.createCachePath(cachePath);
+      assertEquals(
+          PosixFilePermissions.fromString("rwx------"),
+          java.nio.file.Files.getPosixFilePermissions(cachePath.toPath()),
+          "The cache should only be accessible by its owner."
+      );
+
+      java.nio.file.Files.setPosixFilePermissions(cachePath.toPath(), PosixFilePermissions.fromString("rwxrwxrwx"));
+      assertThrows(ConfigException.class, () -> XSDCompiler.createCachePath(cachePath));
+    } finally {
+      MoreFiles.deleteRecursively(tempPath.toPath(), RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+  }
+
+  @Test
+  public void cacheKeyIncludes() throws Exception {
+    final File schemaPath = Files.createTempDir();
+    try {
+      final File types = new File(schemaPath, "types.xsd");
+      final File main = new File(schemaPath, "main.xsd");
+      Files.asCharSink(main, Charsets.UTF_8).write(
+          "<xsd:schema xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\" targetNamespace=\"urn:main\" xmlns:m=\"urn:main\">\n" +
+              "  <xsd:include schemaLocation=\"types.xsd\"/>\n" +
+              "  <xsd:element name=\"main\" type=\"m:MainForm\"/>\n" +
+              "</xsd:schema>\n"
+      );
+      final String types1 = "<xsd:schema xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\" targetNamespace=\"urn:main\">\n" +
+          "  <xsd:complexType name=\"MainForm\"><xsd:sequence><xsd:element name=\"name\" type=\"xsd:string\"/></xsd:sequence></xsd:complexType>\n" +
+          "</xsd:schema>\n";
+      Files.asCharSink(types, Charsets.UTF_8).write(types1);
+      final XSDCompiler compiler = new XSDCompiler(new FromXmlConfig(
+          ImmutableMap.of(FromXmlConfig.SCHEMA_PATH_CONFIG, url(main))
+      ));
+      final String before = compiler.cacheKey();
+      assertEquals(before, compiler.cacheKey());
+
+      Files.asCharSink(types, Charsets.UTF_8).write(types1.replace("xsd:string", "xsd:int"));
+      assertFalse(before.equals(compiler.cacheKey()), "A change to an included schema should change the key.");
+    } finally {
+      MoreFiles.deleteRecursively(schemaPath.toPath(), RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+  }
+
+  @Test
+  public void modelJar() throws Exception {
+    final File outputPath = Files.createTempDir();
+    final FromXmlConfig config = new FromXmlConfig(
+        settings(ImmutableMap.of(FromXmlConfig.PACKAGE_CONFIG, "com.example.books"))
+    );
+    final File jarFile = new File(outputPath, "books-model.jar");
+    try {
+      ModelJarGenerator.generate(config, jarFile);
+      try (URLClassLoader classLoader = new URLClassLoader(new URL[]{jarFile.toURI().toURL()}, Connectable.class.getClassLoader())) {
+        final JAXBContext context = JAXBContext.newInstance("com.example.books", classLoader);
+        final Object element = context.createUnmarshaller().unmarshal(BOOKS_XML);
+        final Object value = element instanceof JAXBElement ? ((JAXBElement) element).getValue() : element;
+        assertEquals("com.example.books", value.getClass().getPackage().getName());
+        assertBooks(((Connectable) value).toStruct());
+      }
+    } finally {
+      MoreFiles.deleteRecursively(outputPath.toPath(), RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+  }
+
+  @Test
+  public void precompiledPackageNotFound() {
+    final FromXml.Value<SinkRecord> precompiled = new FromXml.Value<>();
+    final ConfigException exception = assertThrows(ConfigException.class, () -> precompiled.configure(
+        ImmutableMap.of(
+            FromXmlConfig.MODEL_SOURCE_CONFIG, FromXmlConfig.ModelSource.PRECOMPILED.name(),
+            FromXmlConfig.PACKAGE_CONFIG, "com.example.missing"
+        )
+    ));
+    assertTrue(exception.getMessage().contains("com.example.missing.ObjectFactory"), exception.getMessage());
+  }
+
+  @Test
+  public void schemaPathRequired() {
+    assertThrows(ConfigException.class, () -> new FromXmlConfig(ImmutableMap.of()));
+  }
+
+  @Test
+  public void namespaceUnawareParser() throws Exception {
+    final Map<String, String> namespaceUnaware = ImmutableMap.of(FromXmlConfig.PARSER_NAMESPACE_AWARE_CONFIG, "false");
+    final ConfigException exception = assertThrows(ConfigException.class, () -> new FromXmlConfig(settings(namespaceUnaware)));
+    assertTrue(exception.getMessage().contains(FromXmlConfig.PARSER_NAMESPACE_AWARE_CONFIG), exception.getMessage());
+
+    final Map<String, String> stax = new LinkedHashMap<>(namespaceUnaware);
+    stax.put(FromXmlConfig.CONVERSION_MODE_CONFIG, FromXmlConfig.ConversionMode.STAX.name());
+    // Without namespaces the prefix is part of the name.
+    final String unprefixed = new String(this.books, Charsets.UTF_8).replace("x:books", "books");
+    withTransform(stax, transform -> assertBooks((Struct) transform.apply(record(unprefixed)).value()));
+  }
+
+  /**
+   * Same local name as the root of books.xsd in another namespace.
+   */
+  static final byte[] LIBRARY = "<l:books xmlns:l=\"urn:library\" branch=\"north\"><shelf>A</shelf><shelf>B</shelf></l:books>"
+      .getBytes(Charsets.UTF_8);
+
+  static Map<String, String> librarySchemaSet(Map<String, String> overrides) {
+    final Map<String, String> result = new LinkedHashMap<>();
+    result.put(FromXmlConfig.SCHEMA_SETS_CONFIG, "library");
+    result.put(FromXmlConfig.SCHEMA_SET_PREFIX + "library" + FromXmlConfig.SCHEMA_SET_PATH_SUFFIX, url(LIBRARY_XSD));
+    result.putAll(overrides);
+    return result;
+  }
+
+  @Test
+  public void schemaSets() throws Exception {
+    for (FromXmlConfig.ConversionMode conversionMode : FromXmlConfig.ConversionMode.values()) {
+      withTransform(librarySchemaSet(ImmutableMap.of(FromXmlConfig.CONVERSION_MODE_CONFIG, conversionMode.name())), transform -> {
+        assertEquals(
+            ImmutableList.of("com.github.jcustenborder.kafka.connect.transform.xml.model", "com.github.jcustenborder.kafka.connect.transform.xml.model.library"),
+            ImmutableList.copyOf(transform.compiled.registration.packages())
+        );
+        final List<SinkRecord> output = transform.apply(
+            ImmutableList.of(record(this.books, 1L), record(LIBRARY, 2L))
+        );
+        final Struct bookStruct = (Struct) output.get(0).value();
+        assertEquals(2, bookStruct.getArray("book").size(), conversionMode.name());
+        final Struct libraryStruct = (Struct) output.get(1).value();
+        assertEquals("north", libraryStruct.getString("branch"), conversionMode.name());
+        assertEquals(ImmutableList.of("A", "B"), libraryStruct.getArray("shelf"), conversionMode.name());
+        assertFalse(bookStruct.schema().name().equals(libraryStruct.schema().name()));
+      });
+    }
+  }
+
+  @Test
+  public void schemaSetsSamePackage() {
+    assertThrows(ConfigException.class, () -> new FromXmlConfig(
+        ImmutableMap.of(
+            FromXmlConfig.SCHEMA_SETS_CONFIG, "library",
+            FromXmlConfig.SCHEMA_SET_PREFIX + "library" + FromXmlConfig.SCHEMA_SET_PATH_SUFFIX, url(LIBRARY_XSD),
+            FromXmlConfig.SCHEMA_SET_PREFIX + "library" + FromXmlConfig.SCHEMA_SET_PACKAGE_SUFFIX, "com.example.library",
+            FromXmlConfig.PACKAGE_CONFIG, "com.example.library",
+            FromXmlConfig.SCHEMA_PATH_CONFIG, url(LIBRARY_XSD)
+        )
+    ));
+  }
+
+  @Test
+  public void schemaSetsUndeclaredSettings() {
+    final FromXmlConfig config = new FromXmlConfig(librarySchemaSet(ImmutableMap.of()));
+    assertEquals(
+        ImmutableList.of(url(LIBRARY_XSD)),
+        config.values().get(FromXmlConfig.SCHEMA_SET_PREFIX + "library" + FromXmlConfig.SCHEMA_SET_PATH_SUFFIX),
+        "The settings of each set should be defined."
+    );
+
+    final ConfigException exception = assertThrows(ConfigException.class, () -> new FromXmlConfig(
+        librarySchemaSet(ImmutableMap.of(
+            FromXmlConfig.SCHEMA_SET_PREFIX + "libary" + FromXmlConfig.SCHEMA_SET_PACKAGE_SUFFIX, "com.example.library"
+        ))
+    ));
+    assertTrue(exception.getMessage().contains("libary"), exception.getMessage());
+    assertThrows(ConfigException.class, () -> new FromXmlConfig(
+        librarySchemaSet(ImmutableMap.of(FromXmlConfig.SCHEMA_SETS_CONFIG, "library,library"))
+    ));
+  }
+
+  @Test
+  public void inputCompression() throws Exception {
+    final Struct expected = expected();
+    final Map<FromXmlConfig.Compression, byte[]> compressed = new LinkedHashMap<>();
+    compressed.put(FromXmlConfig.Compression.NONE, this.books);
+    compressed.put(FromXmlConfig.Compression.GZIP, compress(this.books, GZIPOutputStream::new));
+    compressed.put(FromXmlConfig.Compression.ZSTD, compress(this.books, ZstdOutputStream::new));
+    compressed.put(FromXmlConfig.Compression.SNAPPY, compress(this.books, SnappyOutputStream::new));
+
+    for (Map.Entry<FromXmlConfig.Compression, byte[]> kvp : compressed.entrySet()) {
+      assertEquals(kvp.getKey(), Decompression.detect(kvp.getValue()));
+      for (FromXmlConfig.Compression compression : ImmutableList.of(kvp.getKey(), FromXmlConfig.Compression.AUTO)) {
+        withTransform(
+            ImmutableMap.of(
+                FromXmlConfig.INPUT_COMPRESSION_CONFIG, compression.name(),
+                FromXmlConfig.SPLIT_ELEMENT_PATH_CONFIG, "book"
+            ),
+            transform -> {
+              final SinkRecord record = record(kvp.getValue());
+              assertEquals(expected, transform.apply(record).value(), kvp.getKey() + " read as " + compression);
+              final List<Object> books = new ArrayList<>();
+              transform.split(record).forEachRemaining(r -> books.add(r.value()));
+              assertEquals(expected.getArray("book"), books, kvp.getKey() + " split as " + compression);
+            }
+        );
+      }
+    }
+  }
+
+  interface CompressingStream {
+    OutputStream open(OutputStream outputStream) throws IOException;
+  }
+
+  static byte[] compress(byte[] input, CompressingStream compressingStream) throws IOException {
+    final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    try (OutputStream compressed = compressingStream.open(outputStream)) {
+      compressed.write(input);
+    }
+    return outputStream.toByteArray();
+  }
 }
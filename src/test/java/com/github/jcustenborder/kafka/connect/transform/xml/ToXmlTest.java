@@ -0,0 +1,163 @@
+/**
+ * Copyright © 2017 Jeremy Custenborder (jcustenborder@gmail.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.jcustenborder.kafka.connect.transform.xml;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaBuilder;
+import org.apache.kafka.connect.data.Struct;
+import org.apache.kafka.connect.errors.DataException;
+import org.apache.kafka.connect.sink.SinkRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ToXmlTest {
+  File schemaFile;
+  FromXml.Value<SinkRecord> fromXml;
+  ToXml.Value<SinkRecord> transform;
+
+  @BeforeEach
+  public void before() throws MalformedURLException {
+    this.schemaFile = new File("src/test/resources/com/github/jcustenborder/kafka/connect/transform/xml/books.xsd");
+    this.fromXml = new FromXml.Value<>();
+    this.fromXml.configure(
+        ImmutableMap.of(FromXmlConfig.SCHEMA_PATH_CONFIG, this.schemaFile.getAbsoluteFile().toURL().toString())
+    );
+    this.transform = new ToXml.Value<>();
+    this.transform.configure(
+        ImmutableMap.of(ToXmlConfig.SCHEMA_PATH_CONFIG, this.schemaFile.getAbsoluteFile().toURL().toString())
+    );
+  }
+
+  @AfterEach
+  public void after() {
+    this.transform.close();
+    this.fromXml.close();
+  }
+
+  SinkRecord books() throws IOException {
+    final byte[] input = Files.toByteArray(new File("src/test/resources/com/github/jcustenborder/kafka/connect/transform/xml/books.xml"));
+    return this.fromXml.apply(
+        new SinkRecord("test", 1, null, null, Schema.BYTES_SCHEMA, input, 1L)
+    );
+  }
+
+  @Test
+  public void roundTrip() throws IOException {
+    final SinkRecord expected = books();
+    final SinkRecord xml = this.transform.apply(expected);
+    assertEquals(Schema.Type.BYTES, xml.valueSchema().type());
+
+    final SinkRecord actual = this.fromXml.apply(xml);
+    assertEquals(expected.valueSchema(), actual.valueSchema());
+    assertEquals(expected.value(), actual.value());
+  }
+
+  @Test
+  public void outputString() throws IOException {
+    ToXml.Value<SinkRecord> stringTransform = new ToXml.Value<>();
+    stringTransform.configure(
+        ImmutableMap.of(
+            ToXmlConfig.SCHEMA_PATH_CONFIG, this.schemaFile.getAbsoluteFile().toURL().toString(),
+            ToXmlConfig.OUTPUT_TYPE_CONFIG, ToXmlConfig.OutputType.STRING.name()
+        )
+    );
+    try {
+      final SinkRecord books = books();
+      final SinkRecord xml = stringTransform.apply(books);
+      assertEquals(Schema.Type.STRING, xml.valueSchema().type());
+      final String value = (String) xml.value();
+      assertTrue(value.contains("urn:books"), "Root element should be in the schema namespace.");
+      assertTrue(value.contains("<pub_date>2000-10-01</pub_date>"), "Dates should be written without a time.");
+      assertEquals(
+          new String((byte[]) this.transform.apply(books).value(), Charsets.UTF_8),
+          value
+      );
+    } finally {
+      stringTransform.close();
+    }
+  }
+
+  @Test
+  public void tombstone() throws IOException {
+    final SinkRecord books = books();
+    final SinkRecord withSchema = this.transform.apply(
+        new SinkRecord("test", 1, null, null, books.valueSchema(), null, 1L)
+    );
+    assertEquals(Schema.OPTIONAL_BYTES_SCHEMA, withSchema.valueSchema());
+    assertNull(withSchema.value());
+
+    final SinkRecord schemaless = this.transform.apply(new SinkRecord("test", 1, null, null, null, null, 1L));
+    assertNull(schemaless.valueSchema());
+    assertNull(schemaless.value());
+  }
+
+  @Test
+  public void fromXmlSettingsNotDefined() {
+    assertFalse(ToXmlConfig.config().names().contains(FromXmlConfig.CONVERSION_MODE_CONFIG));
+    assertTrue(ToXmlConfig.config().names().contains(ToXmlConfig.COMPILER_CACHE_ENABLED_CONFIG));
+  }
+
+  /**
+   * The layers of shapes.xsd have a choice, which can not be written back to xml.
+   */
+  @Test
+  public void choiceNotSupported() throws IOException {
+    final String shapes = new File("src/test/resources/com/github/jcustenborder/kafka/connect/transform/xml/shapes.xsd")
+        .getAbsoluteFile().toURL().toString();
+    final FromXml.Value<SinkRecord> fromShapes = new FromXml.Value<>();
+    final ToXml.Value<SinkRecord> toShapes = new ToXml.Value<>();
+    try {
+      fromShapes.configure(ImmutableMap.of(FromXmlConfig.SCHEMA_PATH_CONFIG, shapes));
+      toShapes.configure(ImmutableMap.of(ToXmlConfig.SCHEMA_PATH_CONFIG, shapes));
+      final byte[] input = Files.toByteArray(new File("src/test/resources/com/github/jcustenborder/kafka/connect/transform/xml/shapes.xml"));
+      final SinkRecord drawing = fromShapes.apply(
+          new SinkRecord("test", 1, null, null, Schema.BYTES_SCHEMA, input, 1L)
+      );
+      final DataException exception = assertThrows(DataException.class, () -> toShapes.apply(drawing));
+      assertTrue(exception.getMessage().contains("LayerForm"), exception.getMessage());
+    } finally {
+      toShapes.close();
+      fromShapes.close();
+    }
+  }
+
+  @Test
+  public void unknownSchema() {
+    final Schema schema = SchemaBuilder.struct()
+        .name("com.example.Unknown")
+        .field("name", Schema.STRING_SCHEMA)
+        .build();
+    final Struct struct = new Struct(schema)
+        .put("name", "unknown");
+    assertThrows(DataException.class, () -> this.transform.apply(
+        new SinkRecord("test", 1, null, null, schema, struct, 1L)
+    ));
+  }
+}